@@ -0,0 +1,124 @@
+package pt.up.fe.comp2023.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.analysis.JmmSimpleAnalysis;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.comp2023.ollir.optimization.RegisterAllocation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One benchmark per compiler phase, each fed with the output of the previous phases.
+// Run with "gradle jmh", allocation rates are reported with -PjmhArgs="-prof gc".
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Program {
+        @Param({"1", "16"})
+        public int methods;
+
+        @Param({"10", "100"})
+        public int statements;
+
+        @Param({"8"})
+        public int locals;
+
+        @Param({"1", "3"})
+        public int nesting;
+
+        public String code;
+        public Map<String, String> config;
+        public JmmParserResult parserResult;
+        public JmmSemanticsResult semanticsResult;
+        public OllirResult ollirResult;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // Register allocation is benchmarked on the same program, and liveness analysis fails on arraylength calls
+            code = new ProgramGenerator(0).methods(methods).statements(statements).locals(locals).nesting(nesting)
+                    .arrays(false).generate().getCode();
+            config = new HashMap<>();
+            parserResult = new SimpleParser().parse(code, config);
+            semanticsResult = new JmmSimpleAnalysis().semanticAnalysis(parserResult);
+            ollirResult = new JmmOptimizer().toOllir(semanticsResult);
+            if (!ollirResult.getReports().isEmpty()) {
+                throw new IllegalStateException("Generated program does not compile: " + ollirResult.getReports());
+            }
+        }
+
+        // Phases that change their input in place need a new copy for every invocation
+        public JmmSemanticsResult freshSemantics() {
+            Map<String, String> optimize = new HashMap<>(config);
+            optimize.put("optimize", "true");
+            return new JmmSimpleAnalysis().semanticAnalysis(new SimpleParser().parse(code, optimize));
+        }
+
+        public OllirResult freshOllir() {
+            return new OllirResult(ollirResult.getOllirCode(), config);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AstInput {
+        public JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            semanticsResult = program.freshSemantics();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OllirInput {
+        public OllirResult ollirResult;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) {
+            ollirResult = program.freshOllir();
+        }
+    }
+
+    @Benchmark
+    public JmmParserResult parse(Program program) {
+        return new SimpleParser().parse(program.code, program.config);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Program program) {
+        return new JmmSimpleAnalysis().semanticAnalysis(program.parserResult);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult optimizeAst(AstInput input) {
+        return new JmmOptimizer().optimize(input.semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult toOllir(Program program) {
+        return new JmmOptimizer().toOllir(program.semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult registerAllocation(OllirInput input) {
+        new RegisterAllocation(input.ollirResult, 0, input.ollirResult.getConfig()).regAlloc();
+        return input.ollirResult;
+    }
+
+    @Benchmark
+    public JasminResult toJasmin(Program program) {
+        return new Jasmin().toJasmin(program.ollirResult);
+    }
+}
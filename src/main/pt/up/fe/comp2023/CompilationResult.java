@@ -0,0 +1,76 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.util.Collections;
+import java.util.List;
+
+public class CompilationResult {
+    private final String className;
+    private final JmmNode rootNode;
+    private final SymbolTable symbolTable;
+    private final String ollirCode;
+    private final String jasminCode;
+    private final byte[] classFile;
+    private final List<Report> reports;
+
+    public CompilationResult(String className, JmmNode rootNode, SymbolTable symbolTable, String ollirCode,
+                             String jasminCode, List<Report> reports) {
+        this(className, rootNode, symbolTable, ollirCode, jasminCode, null, reports);
+    }
+
+    public CompilationResult(String className, JmmNode rootNode, SymbolTable symbolTable, String ollirCode,
+                             String jasminCode, byte[] classFile, List<Report> reports) {
+        this.className = className;
+        this.rootNode = rootNode;
+        this.symbolTable = symbolTable;
+        this.ollirCode = ollirCode;
+        this.jasminCode = jasminCode;
+        this.classFile = classFile;
+        this.reports = reports;
+    }
+
+    public static CompilationResult failed(List<Report> reports) {
+        return new CompilationResult(null, null, null, null, null, reports);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public JmmNode getRootNode() {
+        return rootNode;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public String getOllirCode() {
+        return ollirCode;
+    }
+
+    public String getJasminCode() {
+        return jasminCode;
+    }
+
+    // Only set when the class file backend is used, in which case there is no Jasmin code
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    public List<Report> getReports() {
+        return reports != null ? reports : Collections.emptyList();
+    }
+
+    public List<Report> getErrors() {
+        return getReports().stream().filter(report -> report.getType() == ReportType.ERROR).toList();
+    }
+
+    public boolean isSuccess() {
+        return (jasminCode != null || classFile != null) && getErrors().isEmpty();
+    }
+}
@@ -0,0 +1,161 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.analysis.JmmSimpleAnalysis;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.classfile.ClassFileBackend;
+import pt.up.fe.comp2023.jasmin.classfile.ClassFileResult;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Runs the whole pipeline for a single source, collecting reports instead of throwing.
+// Every call builds its own stage instances, so one compiler can be shared between threads.
+public class JmmCompiler {
+    private final CompilationCache cache;
+
+    public JmmCompiler() {
+        this(null);
+    }
+
+    public JmmCompiler(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    public CompilationCache getCache() {
+        return cache;
+    }
+
+    // "backend=classfile" writes the class file directly instead of going through Jasmin
+    public static JasminBackend createBackend(Map<String, String> config) {
+        String backend = config.getOrDefault("backend", "jasmin");
+        return switch (backend) {
+            case "jasmin" -> new Jasmin();
+            case "classfile" -> new ClassFileBackend();
+            default -> throw new IllegalArgumentException("Unknown backend '" + backend + "'");
+        };
+    }
+
+    public CompilationResult compile(String code, Map<String, String> config) {
+        if (cache == null) {
+            return compileUncached(code, config);
+        }
+
+        String key = cache.key(code, config);
+        CompilationResult result = cache.get(key);
+        if (result == null) {
+            result = compileUncached(code, config);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    // Without a cache the source is never needed as a String, so the parser maps the file instead
+    public CompilationResult compile(File inputFile, Map<String, String> config) {
+        if (cache != null) {
+            return compile(SpecsIo.read(inputFile), config);
+        }
+        return compileUncached(() -> new SimpleParser().parse(inputFile, config), config);
+    }
+
+    private CompilationResult compileUncached(String code, Map<String, String> config) {
+        return compileUncached(() -> new SimpleParser().parse(code, config), config);
+    }
+
+    private CompilationResult compileUncached(Supplier<JmmParserResult> parse, Map<String, String> config) {
+        List<Report> reports = new ArrayList<>();
+        Set<Report> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        JmmParserResult parserResult;
+        try {
+            parserResult = parse.get();
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing: " + e.getMessage(), e));
+            return CompilationResult.failed(reports);
+        }
+        if (addReports(parserResult.getReports(), reports, seen) || parserResult.getRootNode() == null) {
+            return CompilationResult.failed(reports);
+        }
+
+        JmmSemanticsResult semanticsResult;
+        try {
+            semanticsResult = new JmmSimpleAnalysis().semanticAnalysis(parserResult);
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.SEMANTIC, -1, -1, "Exception during semantic analysis: " + e.getMessage(), e));
+            return CompilationResult.failed(reports);
+        }
+        if (addReports(semanticsResult.getReports(), reports, seen)) {
+            return CompilationResult.failed(reports);
+        }
+
+        OllirResult ollirResult;
+        try {
+            JmmOptimizer optimizer = new JmmOptimizer();
+            semanticsResult = optimizer.optimize(semanticsResult);
+            ollirResult = optimizer.optimize(optimizer.toOllir(semanticsResult));
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1, "Exception during optimization: " + e.getMessage(), e));
+            return CompilationResult.failed(reports);
+        }
+        if (addReports(ollirResult.getReports(), reports, seen)) {
+            return CompilationResult.failed(reports);
+        }
+
+        JasminResult jasminResult;
+        try {
+            jasminResult = createBackend(config).toJasmin(ollirResult);
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.GENERATION, -1, -1, "Exception during Jasmin generation: " + e.getMessage(), e));
+            return CompilationResult.failed(reports);
+        }
+        if (addReports(jasminResult.getReports(), reports, seen)) {
+            return CompilationResult.failed(reports);
+        }
+
+        return result(parserResult, semanticsResult, ollirResult, jasminResult);
+    }
+
+    // Result of a compilation that went through every stage, with the reports of all of them
+    public static CompilationResult result(JmmParserResult parserResult, JmmSemanticsResult semanticsResult,
+                                           OllirResult ollirResult, JasminResult jasminResult) {
+        List<Report> reports = new ArrayList<>();
+        Set<Report> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        addReports(parserResult.getReports(), reports, seen);
+        addReports(semanticsResult.getReports(), reports, seen);
+        addReports(ollirResult.getReports(), reports, seen);
+        addReports(jasminResult.getReports(), reports, seen);
+
+        byte[] classFile = jasminResult instanceof ClassFileResult classFileResult ? classFileResult.getBytes() : null;
+        return new CompilationResult(semanticsResult.getSymbolTable().getClassName(), semanticsResult.getRootNode(),
+                semanticsResult.getSymbolTable(), ollirResult.getOllirCode(), jasminResult.getJasminCode(), classFile,
+                reports);
+    }
+
+    // Later stages carry the reports of the earlier ones, so only add the ones not seen yet.
+    // Returns true if any of the new reports is an error.
+    private static boolean addReports(List<Report> stageReports, List<Report> reports, Set<Report> seen) {
+        boolean hasErrors = false;
+        for (Report report : stageReports) {
+            if (!seen.add(report)) continue;
+            reports.add(report);
+            if (report.getType() == ReportType.ERROR) hasErrors = true;
+        }
+        return hasErrors;
+    }
+}
@@ -1,8 +1,12 @@
 package pt.up.fe.comp2023;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import pt.up.fe.comp.TestUtils;
@@ -11,10 +15,14 @@ import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp2023.analysis.JmmSimpleAnalysis;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.batch.BatchCompiler;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 import pt.up.fe.comp2023.ollir.JmmOptimizer;
 import pt.up.fe.comp2023.ollir.optimization.RegisterAllocation;
+import pt.up.fe.comp2023.server.CompileServer;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsLogs;
 import pt.up.fe.specs.util.SpecsSystem;
@@ -30,6 +38,16 @@ public class Launcher {
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
+        if (config.containsKey("server")) {
+            startServer(Integer.parseInt(config.get("server")), createCompiler(config));
+            return;
+        }
+
+        if (config.containsKey("batch")) {
+            compileBatch(config);
+            return;
+        }
+
         // Get input file
         File inputFile = new File(config.get("inputFile"));
 
@@ -38,14 +56,47 @@ public class Launcher {
             throw new RuntimeException("Expected a path to an existing input file, got '" + inputFile + "'.");
         }
 
-        // Read contents of input file
-        String code = SpecsIo.read(inputFile);
+        // Collect per-phase timings when asked to
+        CompilerMetrics metrics = config.containsKey("metrics") ? CompilerMetrics.start() : null;
+
+        // Serve unchanged sources from the cache, if enabled. Only the cache needs the source as a String,
+        // otherwise the parser reads the file through a memory mapping
+        CompilationCache cache = createCache(config);
+        String code = cache != null ? SpecsIo.read(inputFile) : null;
+        String cacheKey = cache != null ? cache.key(code, config) : null;
+        if (cache != null) {
+            CompilationResult cached = cache.get(cacheKey);
+            if (cached != null) {
+                System.out.println("Phase "+ phase++ +": Loaded from cache");
+                if(config.getOrDefault("debug", "false").equals("true") && cached.getJasminCode() != null) {
+                    System.out.println("\n!--Jasmin code--!\n"+cached.getJasminCode());
+                }
+                System.out.println(cache.getStats());
+                reportMetrics(metrics, config);
+                System.out.println("Compilation finished");
+                return;
+            }
+        }
+
+        CompilationResult result = compileFile(inputFile, code, config);
+
+        if (cache != null) {
+            cache.put(cacheKey, result);
+            System.out.println(cache.getStats());
+        }
+
+        reportMetrics(metrics, config);
+        System.out.println("Compilation finished");
+    }
 
+    // Runs every stage on a single file, printing each phase. The source is only given when the cache
+    // already read it, otherwise the parser maps the file
+    public static CompilationResult compileFile(File inputFile, String code, Map<String, String> config) {
         // Instantiate JmmParser
         SimpleParser parser = new SimpleParser();
 
         // Parse stage
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = code != null ? parser.parse(code, config) : parser.parse(inputFile, config);
 
         // Check if there are parsing errors
         TestUtils.noErrors(parserResult.getReports());
@@ -86,22 +137,118 @@ public class Launcher {
             System.out.println("\n!--Ollir code--!\n"+ollir.getOllirCode());
         }
 
-        //Register allocation
+        //OLLIR optimizations and register allocation
+        ollir = jmmOptimizer.optimize(ollir);
         System.out.println("Phase "+ phase++ +": Register allocation");
         // check for errors on reg alloc
         TestUtils.noErrors(ollir.getReports());
 
         //Jasmin generation
-        JasminBackend jasmin = new Jasmin();
+        JasminBackend jasmin = JmmCompiler.createBackend(config);
         JasminResult jasminResult = jasmin.toJasmin(ollir);
         System.out.println("Phase "+ phase++ +": Jasmin generation");
         if(parserResult.getConfig().getOrDefault("debug", "false").equals("true")) {
-            System.out.println("\n!--Jasmin code--!\n"+jasminResult.getJasminCode());
-            var output = TestUtils.runJasmin(jasminResult.getJasminCode());
+            if (jasminResult.getJasminCode() != null) {
+                System.out.println("\n!--Jasmin code--!\n"+jasminResult.getJasminCode());
+            }
+            var output = jasminResult.run(new ArrayList<>(), new ArrayList<>());
             System.out.println(output);
         }
 
-        System.out.println("Compilation finished");
+        return JmmCompiler.result(parserResult, analysisResult, ollir, jasminResult);
+    }
+
+    // "-t" prints the report, "-t=<file>" writes it to the file
+    private static void reportMetrics(CompilerMetrics metrics, Map<String, String> config) {
+        if (metrics == null) {
+            return;
+        }
+        CompilerMetrics.stop();
+        String destination = config.get("metrics");
+        if (destination.isEmpty()) {
+            System.out.println(metrics.toJson());
+        } else {
+            SpecsIo.write(new File(destination), metrics.toJson());
+        }
+    }
+
+    private static CompilationCache createCache(Map<String, String> config) {
+        if (!config.containsKey("cache")) {
+            return null;
+        }
+        long maxBytes = config.containsKey("cacheSize")
+                ? Long.parseLong(config.get("cacheSize")) * 1024 * 1024
+                : CompilationCache.DEFAULT_MAX_BYTES;
+        return new CompilationCache(new File(config.get("cache")), maxBytes);
+    }
+
+    private static JmmCompiler createCompiler(Map<String, String> config) {
+        return new JmmCompiler(createCache(config));
+    }
+
+    private static void startServer(int port, JmmCompiler compiler) {
+        try (CompileServer server = new CompileServer(port, compiler)) {
+            System.out.println("Compile server listening on port " + server.getPort());
+            server.serve();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compile server on port " + port, e);
+        }
+    }
+
+    private static void compileBatch(Map<String, String> config) {
+        List<File> inputFiles = BatchCompiler.collectInputs(config.get("batch"));
+        if (inputFiles.isEmpty()) {
+            throw new RuntimeException("No input files found for '" + config.get("batch") + "'.");
+        }
+
+        long start = System.nanoTime();
+        JmmCompiler compiler = createCompiler(config);
+        Map<File, CompilationResult> results = new BatchCompiler(compiler, Runtime.getRuntime().availableProcessors())
+                .compile(inputFiles, config);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        File outputDir = config.containsKey("outputDir") ? new File(config.get("outputDir")) : null;
+        int failed = 0;
+        for (var entry : results.entrySet()) {
+            CompilationResult result = entry.getValue();
+            if (!result.isSuccess()) {
+                failed++;
+                System.out.println("FAILED " + entry.getKey());
+                for (Report report : result.getErrors()) {
+                    System.out.println("    " + report);
+                }
+                continue;
+            }
+
+            System.out.println("OK     " + entry.getKey());
+            if (config.getOrDefault("debug", "false").equals("true") && result.getJasminCode() != null) {
+                System.out.println(result.getJasminCode());
+            }
+            if (outputDir != null) {
+                writeOutput(outputDir, result);
+            }
+        }
+
+        System.out.println("Batch finished: " + (results.size() - failed) + "/" + results.size() + " files compiled in " + elapsed + " ms");
+        if (compiler.getCache() != null) {
+            System.out.println(compiler.getCache().getStats());
+        }
+        if (failed > 0) {
+            throw new RuntimeException(failed + " of " + results.size() + " files failed to compile.");
+        }
+    }
+
+    private static void writeOutput(File outputDir, CompilationResult result) {
+        if (result.getClassFile() == null) {
+            SpecsIo.write(new File(outputDir, result.getClassName() + ".j"), result.getJasminCode());
+            return;
+        }
+        try {
+            SpecsIo.mkdir(outputDir);
+            Files.write(new File(outputDir, result.getClassName() + ".class").toPath(), result.getClassFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file for " + result.getClassName(), e);
+        }
     }
 
     private static Map<String, String> parseArgs(String[] args) {
@@ -130,6 +277,15 @@ public class Launcher {
                 case "-o" -> config.put("optimize", "true");
                 case "-r" -> config.put("registerAllocation", option_split[1]);
                 case "-d" -> config.put("debug", "true");
+                case "-b" -> config.put("batch", option_split[1]);
+                case "-out" -> config.put("outputDir", option_split[1]);
+                case "-cache" -> config.put("cache", option_split[1]);
+                case "-cacheSize" -> config.put("cacheSize", option_split[1]);
+                case "-backend" -> config.put("backend", option_split[1]);
+                case "-parser" -> config.put("parser", option_split[1]);
+                case "-j" -> config.put("parallel", "true");
+                case "-t" -> config.put("metrics", option_split.length > 1 ? option_split[1] : "");
+                case "-s" -> config.put("server", option_split.length > 1 ? option_split[1] : String.valueOf(CompileServer.DEFAULT_PORT));
                 default -> throw new IllegalArgumentException("Unexpected argument: " + flag);
             }
         }
@@ -0,0 +1,123 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Character stream over a memory mapped source file. Plain ASCII sources, which is what Java-- programs
+// almost always are, are read straight from the mapping, so the file never gets copied to the heap.
+// Anything else is decoded as UTF-8 into a regular ANTLRInputStream.
+public class MappedCharStream implements CharStream {
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final String sourceName;
+    private int p = 0;
+
+    private MappedCharStream(MappedByteBuffer buffer, String sourceName) {
+        this.buffer = buffer;
+        this.size = buffer.limit();
+        this.sourceName = sourceName;
+    }
+
+    public static CharStream open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CompilerMetrics.count("mappedBytes", buffer.limit());
+
+        if (isAscii(buffer)) {
+            return new MappedCharStream(buffer, file.getName());
+        }
+        CharBuffer chars = StandardCharsets.UTF_8.decode(buffer);
+        ANTLRInputStream input = new ANTLRInputStream(chars.array(), chars.limit());
+        input.name = file.getName();
+        return input;
+    }
+
+    private static boolean isAscii(MappedByteBuffer buffer) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void consume() {
+        if (p >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        p++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        // LA(-1) is the last consumed character
+        int index = i < 0 ? p + i : p + i - 1;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+        return buffer.get(index);
+    }
+
+    // The whole file is always available, so marks are not needed
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.min(index, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size - 1);
+        if (start >= size || stop < start) {
+            return "";
+        }
+        byte[] text = new byte[stop - start + 1];
+        buffer.get(start, text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -0,0 +1,75 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+// Keeps one lexer and parser per thread and points them at every new input, instead of building the
+// whole pipeline for each compilation. The DFA caches filled by ATN prediction are static in the
+// generated classes, so they are shared by every thread and stay warm until clearCaches is called.
+public class ParserPool {
+    private static final ThreadLocal<ParserPool> POOL = ThreadLocal.withInitial(ParserPool::new);
+
+    private final JavammLexer lexer;
+    private final JavammParser parser;
+    private boolean used;
+
+    private ParserPool() {
+        this.lexer = new JavammLexer(new ANTLRInputStream(""));
+        this.parser = new JavammParser(new CommonTokenStream(lexer));
+    }
+
+    // The returned parser belongs to the calling thread and is only valid until its next acquire
+    public static JavammParser acquire(String jmmCode) {
+        return acquire(new ANTLRInputStream(jmmCode));
+    }
+
+    public static JavammParser acquire(CharStream input) {
+        ParserPool pool = POOL.get();
+        if (pool.used) {
+            CompilerMetrics.count("parserReuses", 1);
+        }
+        pool.used = true;
+        return pool.reset(input);
+    }
+
+    private JavammParser reset(CharStream input) {
+        // The same input is given again when parsing falls back to full LL
+        input.seek(0);
+        lexer.setInputStream(input);
+        // The token buffer is the only part that isn't reused, setTokenSource doesn't clear its EOF flag
+        parser.setTokenStream(new CommonTokenStream(lexer));
+
+        // Undo whatever the previous compilation changed
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return parser;
+    }
+
+    // Drops the DFA states learned so far, to bound the memory of long running processes
+    public static void clearCaches() {
+        ParserPool pool = POOL.get();
+        pool.lexer.getInterpreter().clearDFA();
+        pool.parser.getInterpreter().clearDFA();
+    }
+
+    public static int getDfaStates() {
+        ParserPool pool = POOL.get();
+        return countStates(pool.lexer.getInterpreter().decisionToDFA) + countStates(pool.parser.getInterpreter().decisionToDFA);
+    }
+
+    private static int countStates(DFA[] dfas) {
+        int states = 0;
+        for (DFA dfa : dfas) {
+            states += dfa.states.size();
+        }
+        return states;
+    }
+}
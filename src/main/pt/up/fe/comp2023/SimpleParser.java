@@ -1,8 +1,13 @@
 package pt.up.fe.comp2023;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.ast.antlr.ThrowingErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
@@ -10,10 +15,14 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -37,28 +46,93 @@ public class SimpleParser implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("parse");
+        try {
+            return parse(new ANTLRInputStream(jmmCode), startingRule, config);
+        } finally {
+            phase.close();
+        }
+    }
 
+    // Reads the source through a memory mapping instead of a String
+    public JmmParserResult parse(File inputFile, Map<String, String> config) {
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("parse");
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2023.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2023.JavammParser(tokens);
-
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule)
+            return parse(MappedCharStream.open(inputFile), getDefaultRule(), config);
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Could not read " + inputFile, e));
+        } finally {
+            phase.close();
+        }
+    }
+
+    private JmmParserResult parse(CharStream input, String startingRule, Map<String, String> config) {
+        try {
+            String mode = config.getOrDefault("parser", "twoStage");
+            Optional<JmmNode> rootNode = Optional.empty();
+            JavammParser parser = null;
+
+            // SLL prediction is enough for almost every valid program, and the bail strategy gives up on the
+            // first error instead of recovering, so only inputs that really need full LL are parsed twice
+            if (!mode.equals("ll")) {
+                parser = ParserPool.acquire(input);
+                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                if (mode.equals("twoStage")) {
+                    parser.removeErrorListeners();
+                    parser.setErrorHandler(new BailErrorStrategy());
+                }
+                try {
+                    rootNode = parse(parser, startingRule);
+                    CompilerMetrics.count("sllParses", 1);
+                } catch (RuntimeException e) {
+                    // The rule is invoked through reflection, so the bail out exception arrives wrapped
+                    if (!mode.equals("twoStage") || !isCancellation(e)) throw e;
+                    CompilerMetrics.count("llFallbacks", 1);
+                    parser = null;
+                }
+            }
+
+            if (parser == null) {
+                parser = ParserPool.acquire(input);
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                CompilerMetrics.count("llParses", 1);
+                rootNode = parse(parser, startingRule);
+            }
+
+            if (CompilerMetrics.isEnabled()) {
+                CompilerMetrics.count("tokens", parser.getTokenStream().size());
+                rootNode.ifPresent(root -> CompilerMetrics.count("nodes", countNodes(root)));
+            }
+            int syntaxErrors = parser.getNumberOfSyntaxErrors();
+            return rootNode
                     // If there were no errors and a root node was generated, create a JmmParserResult with the node
                     .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
                     // If there were errors, create an error JmmParserResult without root node
                     .orElseGet(() -> JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
-                            "There were " + parser.getNumberOfSyntaxErrors() + " syntax errors during parsing, terminating")));
+                            "There were " + syntaxErrors + " syntax errors during parsing, terminating")));
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
         }
     }
+
+    private static Optional<JmmNode> parse(JavammParser parser, String startingRule) {
+        return AntlrParser.parse((Lexer) parser.getTokenStream().getTokenSource(), parser, startingRule);
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) return true;
+        }
+        return false;
+    }
+
+    private static int countNodes(JmmNode node) {
+        int count = 1;
+        for (JmmNode child : node.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
 }
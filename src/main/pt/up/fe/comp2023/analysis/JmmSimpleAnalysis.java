@@ -6,6 +6,7 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp2023.analysis.analysers.*;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,16 +18,40 @@ public class JmmSimpleAnalysis implements JmmAnalysis {
         JmmNode root = jmmParserResult.getRootNode();
         SymbolTableCR symbolTable = new SymbolTableCR();
         SymbolTableVisitor stVisitor =  new SymbolTableVisitor();
-        List<Report> reps = symbolTable.getReports();
-        stVisitor.visit(root,symbolTable);
+        CompilerMetrics.Phase symbolTablePhase = CompilerMetrics.phase("symbolTable");
+        try {
+            stVisitor.visit(root,symbolTable);
+        } finally {
+            symbolTablePhase.close();
+        }
+        // The checkers only read the table from here on
+        symbolTable.freeze();
+        List<Report> reps = new ArrayList<>(symbolTable.getReports());
 
+        CompilerMetrics.Phase typesPhase = CompilerMetrics.phase("types");
+        try {
+            CompilerMetrics.count("typedNodes", TypeAnnotator.annotate(root, symbolTable));
+        } finally {
+            typesPhase.close();
+        }
 
-        List<SemanticAnalysisVisitor> visitors = Arrays.asList(new ArrayAccess(),new AssignmentSemantics(),new OperationSemantics(),
-                new ThisSemantics(), new ConditionSemantics(), new ReturnSemantics(), new MethodSemantics());
-        for(SemanticAnalysisVisitor v: visitors) {
-            v.visit(root,symbolTable);
-            reps.addAll(v.getReports());
+        boolean parallel = jmmParserResult.getConfig().getOrDefault("parallel", "false").equals("true");
+        SemanticAnalysisEngine engine = new SemanticAnalysisEngine(JmmSimpleAnalysis::checkers);
+        CompilerMetrics.Phase semanticPhase = CompilerMetrics.phase("semantic");
+        try {
+            List<Report> semanticReports = engine.analyse(root,symbolTable,parallel);
+            CompilerMetrics.count("nodesVisited", engine.getNodesVisited());
+            CompilerMetrics.count("handlerCalls", engine.getHandlerCalls());
+            CompilerMetrics.count("reports", semanticReports.size());
+            reps.addAll(semanticReports);
+        } finally {
+            semanticPhase.close();
         }
         return new JmmSemanticsResult(jmmParserResult, symbolTable, reps);
     }
+
+    public static List<SemanticAnalysisVisitor> checkers() {
+        return Arrays.asList(new ArrayAccess(),new AssignmentSemantics(),new OperationSemantics(),
+                new ThisSemantics(), new ConditionSemantics(), new ReturnSemantics(), new MethodSemantics());
+    }
 }
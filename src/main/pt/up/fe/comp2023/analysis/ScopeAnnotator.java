@@ -0,0 +1,46 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Enclosing method of every node, found in a single walk so scope lookups don't have to climb the tree.
+// It is a side table keyed by node identity, the AST itself is left untouched.
+public class ScopeAnnotator {
+    private final Map<JmmNode, String> methodNames = new IdentityHashMap<>();
+    private String className = "";
+
+    private ScopeAnnotator() {
+    }
+
+    public static ScopeAnnotator annotate(JmmNode root) {
+        ScopeAnnotator scopes = new ScopeAnnotator();
+        scopes.annotate(root, "");
+        return scopes;
+    }
+
+    private void annotate(JmmNode node, String methodName) {
+        switch (node.getKind()) {
+            case "ClassDeclaration" -> className = node.get("className");
+            case "MethodDeclaration" -> methodName = node.get("name");
+        }
+        methodNames.put(node, methodName);
+        for (JmmNode child : node.getChildren()) {
+            this.annotate(child, methodName);
+        }
+    }
+
+    // Name of the enclosing method, "" outside methods and null for nodes that weren't annotated
+    public String getMethodName(JmmNode node) {
+        return methodNames.get(node);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public int size() {
+        return methodNames.size();
+    }
+}
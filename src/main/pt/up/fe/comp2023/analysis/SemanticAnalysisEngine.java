@@ -0,0 +1,118 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Runs every checker in a single preorder traversal. Each node is only handed to the checkers that
+// registered a visit for its kind. Checkers keep their own reports and these are appended in checker
+// order, so the reports come out in the same order as with one traversal per checker.
+public class SemanticAnalysisEngine {
+    private final Supplier<List<SemanticAnalysisVisitor>> checkers;
+    private int nodesVisited = 0;
+    private int handlerCalls = 0;
+
+    public SemanticAnalysisEngine(Supplier<List<SemanticAnalysisVisitor>> checkers) {
+        this.checkers = checkers;
+    }
+
+    // In parallel mode every method is analysed on its own pass, with its own checkers. The symbol table
+    // must be frozen by then, it is the only state the passes share.
+    public List<Report> analyse(JmmNode root, SymbolTableCR symbolTable, boolean parallel) {
+        ScopeAnnotator scopes;
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("scopes");
+        try {
+            scopes = ScopeAnnotator.annotate(root);
+            CompilerMetrics.count("nodes", scopes.size());
+        } finally {
+            phase.close();
+        }
+
+        if (!parallel) {
+            Pass pass = new Pass(checkers.get(), scopes);
+            pass.visit(root, symbolTable, null);
+            return this.merge(List.of(pass));
+        }
+
+        // Method declarations are the last children of the class, so the nodes outside them come first
+        // in preorder and the passes can be merged in source order
+        List<JmmNode> methods = new ArrayList<>();
+        Pass outer = new Pass(checkers.get(), scopes);
+        outer.visit(root, symbolTable, methods);
+
+        List<Pass> passes = new ArrayList<>();
+        passes.add(outer);
+        passes.addAll(methods.parallelStream().map(method -> {
+            Pass pass = new Pass(checkers.get(), scopes);
+            pass.visit(method, symbolTable, null);
+            return pass;
+        }).toList());
+        return this.merge(passes);
+    }
+
+    // Reports of each checker in source order, one checker after the other
+    private List<Report> merge(List<Pass> passes) {
+        List<Report> reports = new ArrayList<>();
+        int numCheckers = passes.get(0).checkers.size();
+        for (int i = 0; i < numCheckers; i++) {
+            for (Pass pass : passes) {
+                reports.addAll(pass.checkers.get(i).getReports());
+            }
+        }
+        for (Pass pass : passes) {
+            nodesVisited += pass.nodesVisited;
+            handlerCalls += pass.handlerCalls;
+        }
+        return reports;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    public int getHandlerCalls() {
+        return handlerCalls;
+    }
+
+    private static class Pass {
+        private final List<SemanticAnalysisVisitor> checkers;
+        private final Map<String, List<SemanticAnalysisVisitor>> handlers = new HashMap<>();
+        private int nodesVisited = 0;
+        private int handlerCalls = 0;
+
+        private Pass(List<SemanticAnalysisVisitor> checkers, ScopeAnnotator scopes) {
+            this.checkers = checkers;
+            for (SemanticAnalysisVisitor checker : checkers) {
+                checker.setScopes(scopes);
+                for (String kind : checker.getHandledKinds()) {
+                    handlers.computeIfAbsent(kind, k -> new ArrayList<>()).add(checker);
+                }
+            }
+        }
+
+        // Method declarations are collected instead of visited when methods is given
+        private void visit(JmmNode node, SymbolTableCR symbolTable, List<JmmNode> methods) {
+            if (methods != null && node.getKind().equals("MethodDeclaration")) {
+                methods.add(node);
+                return;
+            }
+            nodesVisited++;
+            List<SemanticAnalysisVisitor> nodeHandlers = handlers.get(node.getKind());
+            if (nodeHandlers != null) {
+                for (SemanticAnalysisVisitor checker : nodeHandlers) {
+                    checker.visitNode(node, symbolTable);
+                    handlerCalls++;
+                }
+            }
+            for (JmmNode child : node.getChildren()) {
+                this.visit(child, symbolTable, methods);
+            }
+        }
+    }
+}
@@ -7,83 +7,71 @@ import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 public abstract class SemanticAnalysisVisitor extends PreorderJmmVisitor <SymbolTableCR,Integer> {
 
     private final List<Report> reports;
+    private int nodesVisited = 0;
+    // Filled by buildVisitor, which runs in the super constructor before any field initializer
+    private Set<String> handledKinds;
+    private ScopeAnnotator scopes;
 
     public SemanticAnalysisVisitor() {
         this.reports = new ArrayList<>();
     }
 
-    public Type getVariableType(String id, String methodName, SymbolTableCR symbolTable) {
-        List<Symbol> methodVars = symbolTable.getLocalVariables(methodName);
-        List<Symbol> params = symbolTable.getParameters(methodName);
-        List<Symbol> fields = symbolTable.getFields();
-
-        for(Symbol s : methodVars) {
-            if(Objects.equals(s.getName(), id)) {
-                return s.getType();
-            }
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, SymbolTableCR, Integer> method) {
+        if (handledKinds == null) {
+            handledKinds = new LinkedHashSet<>();
         }
+        handledKinds.add(kind);
+        super.addVisit(kind, method);
+    }
 
-        for(Symbol s : params) {
-            if(Objects.equals(s.getName(), id)) {
-                return s.getType();
-            }
-        }
+    // Without scopes the enclosing method and class are found by walking up the tree
+    public void setScopes(ScopeAnnotator scopes) {
+        this.scopes = scopes;
+    }
 
-        for(Symbol s : fields) {
-            if(Objects.equals(s.getName(), id)) {
-                return s.getType();
-            }
-        }
+    public Set<String> getHandledKinds() {
+        return handledKinds == null ? Set.of() : handledKinds;
+    }
 
-        return new Type("unknown",false);
+    @Override
+    public Integer visit(JmmNode jmmNode, SymbolTableCR symbolTable) {
+        nodesVisited++;
+        return super.visit(jmmNode, symbolTable);
     }
 
+    // Runs the handler of this node only, the traversal is left to the caller
+    public Integer visitNode(JmmNode jmmNode, SymbolTableCR symbolTable) {
+        nodesVisited++;
+        return getVisit(jmmNode).apply(jmmNode, symbolTable);
+    }
 
-    public Type getNodeType(JmmNode node, SymbolTableCR symbolTable) {
-        return
-        switch(node.getKind()) {
-            case "Identifier","VarAssign" -> this.getIdentifierType(node,symbolTable);
-            case "Integer", "String", "Boolean" -> this.getLiteralType(node);
-            case "BinaryOp", "ArrayIndex", "ArrayLength" -> new Type("int",false);
-            case "CompareOp", "LogicalOp" -> new Type("boolean",false);
-            case "NewIntArray" -> new Type("int",true);
-            case "NewObj" -> new Type(node.get("var"),false);
-            case "MethodCall" -> getMethodCallType(node,symbolTable);
-            case "This" -> new Type("this",false);
-            case "Not" -> new Type("boolean",false);
-            case "Parentheses" -> getNodeType(node.getJmmChild(0), symbolTable);
-            default -> new Type("unknown",false);
-        };
-    }
-
-    public Type getIdentifierType(JmmNode node, SymbolTableCR symbolTable) {
-        String methodName = getMethodName(node);
-        Type nodeType =  this.getVariableType(node.get("var"),methodName,symbolTable);
-        return nodeType;
-    }
-
-    public Type getLiteralType(JmmNode node) {
-        String type = node.getKind().toLowerCase();
-        if(type.equals("integer")) {
-            type = "int";
-        }
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
 
-        return new Type(type,false);
+    public Type getVariableType(String id, String methodName, SymbolTableCR symbolTable) {
+        Symbol symbol = symbolTable.lookup(id, methodName);
+        return symbol != null ? symbol.getType() : new Type("unknown",false);
     }
 
-    public Type getMethodCallType(JmmNode node, SymbolTableCR symbolTable) {
-        String methodName = node.get("var");
-        Type returned = symbolTable.getReturnType(methodName);
-        if(Objects.equals(returned.getName(), "void")) {
-            return new Type("inexistent",false);
+
+    // Types are resolved once by TypeAnnotator, nodes it didn't annotate are resolved here
+    public Type getNodeType(JmmNode node, SymbolTableCR symbolTable) {
+        Type type = TypeAnnotator.getType(node);
+        if (type != null) {
+            return type;
         }
-        return symbolTable.getReturnType(methodName);
+        return TypeAnnotator.resolve(node, symbolTable, () -> getMethodName(node));
     }
 
     public boolean isLiteral(JmmNode node) {
@@ -91,6 +79,11 @@ public abstract class SemanticAnalysisVisitor extends PreorderJmmVisitor <Symbol
     }
 
     public String getMethodName(JmmNode node) {
+        String methodName = scopes != null ? scopes.getMethodName(node) : null;
+        if (methodName != null) {
+            return methodName;
+        }
+
         while(!Objects.equals(node.getKind(), "MethodDeclaration") && !Objects.equals(node.getKind(), "ClassDeclaration")) {
             node = node.getJmmParent();
         }
@@ -104,6 +97,10 @@ public abstract class SemanticAnalysisVisitor extends PreorderJmmVisitor <Symbol
     }
 
     public String getClassName(JmmNode node) {
+        if (scopes != null && scopes.getMethodName(node) != null) {
+            return scopes.getClassName();
+        }
+
         while(!Objects.equals(node.getKind(), "ClassDeclaration")) {
             node = node.getJmmParent();
         }
@@ -12,7 +12,7 @@ import java.util.*;
 public class SymbolTableCR implements SymbolTable {
     private String className = "";
     private String classSuper = "";
-    private final List<Report> reports;
+    private List<Report> reports;
 
     private List<String> methods = new ArrayList<>();
     private List<String> imports = new ArrayList<>();
@@ -21,9 +21,59 @@ public class SymbolTableCR implements SymbolTable {
     private Map<String, List<Symbol>> parameters = new HashMap<>();
     private Map<String, List<Symbol>> localVariables = new HashMap<>();
 
+    // Name lookups go through these indexes, kept alongside the lists the SymbolTable interface returns.
+    // A name declared twice keeps its first symbol, like a scan over the lists would find.
+    private Set<String> methodIndex = new HashSet<>();
+    private Map<String, Symbol> fieldIndex = new HashMap<>();
+    private Map<String, Map<String, Symbol>> parameterIndex = new HashMap<>();
+    private Map<String, Map<String, Integer>> parameterPositions = new HashMap<>();
+    private Map<String, Map<String, Symbol>> localVariableIndex = new HashMap<>();
+    private volatile boolean frozen = false;
+
     public SymbolTableCR() {
         this.reports = new ArrayList<>();
     }
+
+    // Makes the table read-only once it is complete. The collections are replaced by unmodifiable
+    // copies before the volatile write, so a thread that sees the table frozen sees all of it.
+    public void freeze() {
+        if (frozen) return;
+        this.reports = Collections.unmodifiableList(new ArrayList<>(reports));
+        this.methods = Collections.unmodifiableList(new ArrayList<>(methods));
+        this.imports = Collections.unmodifiableList(new ArrayList<>(imports));
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.returnTypes = Collections.unmodifiableMap(new HashMap<>(returnTypes));
+        this.parameters = freezeSymbols(parameters);
+        this.localVariables = freezeSymbols(localVariables);
+        this.methodIndex = Collections.unmodifiableSet(methodIndex);
+        this.fieldIndex = Collections.unmodifiableMap(fieldIndex);
+        this.parameterIndex = freezeIndex(parameterIndex);
+        this.parameterPositions = freezeIndex(parameterPositions);
+        this.localVariableIndex = freezeIndex(localVariableIndex);
+        this.frozen = true;
+    }
+
+    private static Map<String, List<Symbol>> freezeSymbols(Map<String, List<Symbol>> symbols) {
+        Map<String, List<Symbol>> copy = new HashMap<>();
+        symbols.forEach((name, list) -> copy.put(name, Collections.unmodifiableList(new ArrayList<>(list))));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static <T> Map<String, Map<String, T>> freezeIndex(Map<String, Map<String, T>> index) {
+        Map<String, Map<String, T>> copy = new HashMap<>();
+        index.forEach((name, scope) -> copy.put(name, Collections.unmodifiableMap(scope)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Symbol table is frozen");
+        }
+    }
     @Override
     public List<String> getImports() {
         var imports = this.imports;
@@ -31,6 +81,7 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public void addImport(String s) {
+        checkNotFrozen();
         this.imports.add(s);
     }
 
@@ -41,6 +92,7 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public void setClassName(String s) {
+        checkNotFrozen();
         this.className = s;
     }
 
@@ -50,6 +102,7 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public void setSuper(String s) {
+        checkNotFrozen();
         this.classSuper = s;
     }
 
@@ -60,30 +113,40 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public void addField(Symbol s) {
+        checkNotFrozen();
         if(fieldExists(s.getName())) {
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, 0,0,"Duplicated Field!"));
             return;
         };
         this.fields.add(s);
+        this.fieldIndex.put(s.getName(), s);
     }
 
     public boolean fieldExists(String var) {
-        for(Symbol s: fields) {
-            if(Objects.equals(s.getName(), var)) {
-                return true;
-            }
-        }
-        return false;
+        return fieldIndex.containsKey(var);
     }
 
     public void addMethod(String methodName, Type returnType, List<Symbol> parameters) {
+        checkNotFrozen();
         if (methodExists(methodName)) {
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, 0,0,"Duplicated Method!"));
             return;
         }
         this.methods.add(methodName);
+        this.methodIndex.add(methodName);
         this.returnTypes.put(methodName,returnType);
         this.parameters.put(methodName,parameters);
+
+        Map<String, Symbol> scope = new HashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            Symbol param = parameters.get(i);
+            if (scope.putIfAbsent(param.getName(), param) == null) {
+                positions.put(param.getName(), i + 1);
+            }
+        }
+        this.parameterIndex.put(methodName, scope);
+        this.parameterPositions.put(methodName, positions);
     }
 
     @Override
@@ -93,6 +156,7 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public void addLocalVar(String methodName, Symbol var) {
+        checkNotFrozen();
         if (localVarExists(var.getName(), methodName)) {
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, 0,0,"Duplicated Local Vars!"));
             return;
@@ -107,6 +171,7 @@ public class SymbolTableCR implements SymbolTable {
             nova.add(var);
             localVariables.put(methodName, nova);
         }
+        localVariableIndex.computeIfAbsent(methodName, k -> new HashMap<>()).put(var.getName(), var);
     }
 
     @Override
@@ -128,48 +193,42 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public Type getLocalVariableType(String id, String methodName) {
-        List<Symbol> methodVars = this.localVariables.get(methodName);
-        for(Symbol s : methodVars) {
-            if(Objects.equals(s.getName(), id)) {
-                return s.getType();
-            }
-        }
-        return new Type("unknown",false);
+        Symbol local = getLocalVariable(id, methodName);
+        return local != null ? local.getType() : new Type("unknown",false);
     }
 
     public boolean methodExists(String methodName) {
-        for(String x : methods) {
-            if(Objects.equals(x, methodName)) {
-                return true;
-            }
-        }
-        return false;
+        return methodIndex.contains(methodName);
     }
 
     public boolean localVarExists(String var, String methodName) {
-        if(localVariables.containsKey(methodName)) {
-            List<Symbol> locals = getLocalVariables(methodName);
-            for(Symbol s : locals) {
-                if(Objects.equals(s.getName(), var)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        return false;
+        return getLocalVariable(var, methodName) != null;
     }
 
     public boolean paramExists(String param, String methodName) {
-        if(parameters.containsKey(methodName)) {
-            List<Symbol> locals = getParameters(methodName);
-            for(Symbol s : locals) {
-                if(Objects.equals(s.getName(), param)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        return false;
+        return getParameter(param, methodName) != null;
+    }
+
+    public Symbol getLocalVariable(String var, String methodName) {
+        Map<String, Symbol> scope = localVariableIndex.get(methodName);
+        return scope != null ? scope.get(var) : null;
+    }
+
+    public Symbol getParameter(String param, String methodName) {
+        Map<String, Symbol> scope = parameterIndex.get(methodName);
+        return scope != null ? scope.get(param) : null;
+    }
+
+    public Symbol getField(String field) {
+        return fieldIndex.get(field);
+    }
+
+    // Locals shadow parameters, which shadow fields
+    public Symbol lookup(String var, String methodName) {
+        Symbol symbol = getLocalVariable(var, methodName);
+        if (symbol == null) symbol = getParameter(var, methodName);
+        if (symbol == null) symbol = getField(var);
+        return symbol;
     }
 
 
@@ -184,42 +243,19 @@ public class SymbolTableCR implements SymbolTable {
 
 
     public List<Object> getLocalVarType(String localVar, String method){
-
-        List<Symbol> localVariablesAux = localVariables.get(method);
-
-        if(localVariablesAux == null){
-            return null;
-        }
-
-        for(Symbol aux : localVariablesAux){
-            if(Objects.equals(aux.getName(), localVar))
-                return List.of(aux.getType().getName(), aux.getType().isArray());
-        }
-        return null;
+        return typeOf(getLocalVariable(localVar, method));
     }
 
     public List<Object> getParamType(String param, String method){
-
-        List<Symbol> params_aux = parameters.get(method);
-
-        if(params_aux == null){
-            return null;
-        }
-
-        for(Symbol aux : params_aux){
-            if(Objects.equals(aux.getName(), param))
-                return List.of(aux.getType().getName(), aux.getType().isArray());
-        }
-        return null;
+        return typeOf(getParameter(param, method));
     }
 
     public List<Object> getFieldType(String field){
+        return typeOf(getField(field));
+    }
 
-        for(Symbol aux : fields){
-            if(Objects.equals(aux.getName(), field))
-                return List.of(aux.getType().getName(), aux.getType().isArray());
-        }
-        return null;
+    private static List<Object> typeOf(Symbol symbol) {
+        return symbol != null ? List.of(symbol.getType().getName(), symbol.getType().isArray()) : null;
     }
 
     public List<String> getParsedImports() {
@@ -234,24 +270,15 @@ public class SymbolTableCR implements SymbolTable {
     }
 
     public int getParamIndex(String param, String method){
-        int index = 1;
-        var methodParams = getParameters(method);
-        for(Symbol paramAux : methodParams){
-            if (paramAux.getName().equals(param)) return index;
-            index++;
-        }
+        Map<String, Integer> positions = parameterPositions.get(method);
+        Integer index = positions != null ? positions.get(param) : null;
         //Is syntatic analysis is correct, this should never happen
-        return -1;
+        return index != null ? index : -1;
     }
 
     public Type getAnyType(String var, String method){
-        List<Object> type;
-
-        if((type = getLocalVarType(var, method)) != null) return new Type((String) type.get(0), (boolean) type.get(1));
-        if((type = getParamType(var, method)) != null) return new Type((String) type.get(0), (boolean) type.get(1));
-        if((type = getFieldType(var)) != null) return new Type((String) type.get(0), (boolean) type.get(1));
-
-        return null;
+        Symbol symbol = lookup(var, method);
+        return symbol != null ? new Type(symbol.getType().getName(), symbol.getType().isArray()) : null;
     }
 
 }
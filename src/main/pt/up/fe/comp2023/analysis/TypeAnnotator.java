@@ -0,0 +1,108 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.ollir.Utils;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Resolves the type of every expression once and stores it on the node together with its OLLIR suffix,
+// so the checkers and the OLLIR generator don't derive it again. Types are stored as strings, with "[]"
+// for arrays, so annotated trees still serialize to JSON.
+public class TypeAnnotator {
+    public static final String TYPE = "type";
+    public static final String OLLIR_TYPE = "ollirType";
+
+    private static final Set<String> TYPED_KINDS = Set.of("Identifier", "VarAssign", "Integer", "String", "Boolean",
+            "BinaryOp", "ArrayIndex", "ArrayLength", "CompareOp", "LogicalOp", "NewIntArray", "NewObj", "MethodCall",
+            "This", "Not", "Parentheses");
+    // Placeholder types of the analysis, they have no OLLIR counterpart
+    private static final Set<String> UNTYPED = Set.of("unknown", "inexistent", "this");
+
+    private final SymbolTableCR symbolTable;
+    private int annotated = 0;
+
+    private TypeAnnotator(SymbolTableCR symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    // Returns the number of nodes that got a type
+    public static int annotate(JmmNode root, SymbolTableCR symbolTable) {
+        TypeAnnotator annotator = new TypeAnnotator(symbolTable);
+        annotator.annotate(root, "");
+        return annotator.annotated;
+    }
+
+    private void annotate(JmmNode node, String methodName) {
+        if (node.getKind().equals("MethodDeclaration")) {
+            methodName = node.get("name");
+        }
+        // Children first, parentheses take the type of their expression
+        for (JmmNode child : node.getChildren()) {
+            this.annotate(child, methodName);
+        }
+        if (TYPED_KINDS.contains(node.getKind())) {
+            String scope = methodName;
+            Type type = resolve(node, symbolTable, () -> scope);
+            node.put(TYPE, type.getName() + (type.isArray() ? "[]" : ""));
+            if (!UNTYPED.contains(type.getName())) {
+                node.put(OLLIR_TYPE, Utils.toOllirType(type.getName(), type.isArray()));
+            }
+            annotated++;
+        }
+    }
+
+    // Type stored on the node, null if it wasn't annotated
+    public static Type getType(JmmNode node) {
+        if (!node.hasAttribute(TYPE)) {
+            return null;
+        }
+        String type = node.get(TYPE);
+        return type.endsWith("[]") ? new Type(type.substring(0, type.length() - 2), true) : new Type(type, false);
+    }
+
+    public static Type getType(JmmNode node, SymbolTableCR symbolTable, String methodName) {
+        Type type = getType(node);
+        return type != null ? type : resolve(node, symbolTable, () -> methodName);
+    }
+
+    // OLLIR suffix of the node, resolved here for nodes created after the annotation. Null when the
+    // expression has no OLLIR type.
+    public static String getOllirType(JmmNode node, SymbolTableCR symbolTable, String methodName) {
+        if (node.hasAttribute(OLLIR_TYPE)) {
+            return node.get(OLLIR_TYPE);
+        }
+        Type type = getType(node, symbolTable, methodName);
+        return UNTYPED.contains(type.getName()) ? null : Utils.toOllirType(type.getName(), type.isArray());
+    }
+
+    // The method name is only needed for identifiers, and finding it can be expensive without scopes
+    public static Type resolve(JmmNode node, SymbolTableCR symbolTable, Supplier<String> methodName) {
+        return switch (node.getKind()) {
+            case "Identifier", "VarAssign" -> {
+                Symbol symbol = symbolTable.lookup(node.get("var"), methodName.get());
+                yield symbol != null ? symbol.getType() : new Type("unknown", false);
+            }
+            case "Integer" -> new Type("int", false);
+            case "String", "Boolean" -> new Type(node.getKind().toLowerCase(), false);
+            case "BinaryOp", "ArrayIndex", "ArrayLength" -> new Type("int", false);
+            case "CompareOp", "LogicalOp", "Not" -> new Type("boolean", false);
+            case "NewIntArray" -> new Type("int", true);
+            case "NewObj" -> new Type(node.get("var"), false);
+            case "MethodCall" -> {
+                Type returned = symbolTable.getReturnType(node.get("var"));
+                yield Objects.equals(returned.getName(), "void") ? new Type("inexistent", false) : returned;
+            }
+            case "This" -> new Type("this", false);
+            case "Parentheses" -> {
+                JmmNode expression = node.getJmmChild(0);
+                Type type = getType(expression);
+                yield type != null ? type : resolve(expression, symbolTable, methodName);
+            }
+            default -> new Type("unknown", false);
+        };
+    }
+}
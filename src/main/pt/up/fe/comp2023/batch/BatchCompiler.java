@@ -0,0 +1,154 @@
+package pt.up.fe.comp2023.batch;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class BatchCompiler {
+    private final JmmCompiler compiler;
+    private final int parallelism;
+
+    public BatchCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompiler(int parallelism) {
+        this(new JmmCompiler(), parallelism);
+    }
+
+    public BatchCompiler(JmmCompiler compiler, int parallelism) {
+        this.compiler = compiler;
+        this.parallelism = parallelism;
+    }
+
+    // Results keep the order of the input files
+    public Map<File, CompilationResult> compile(List<File> files, Map<String, String> config) {
+        List<Callable<CompilationResult>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(() -> compileFile(file, config));
+        }
+
+        Map<File, CompilationResult> results = new LinkedHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<CompilationResult>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < files.size(); i++) {
+                results.put(files.get(i), getResult(futures.get(i)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    private CompilationResult compileFile(File file, Map<String, String> config) {
+        Map<String, String> fileConfig = new HashMap<>(config);
+        fileConfig.put("inputFile", file.getPath());
+        try {
+            return compiler.compile(file, fileConfig);
+        } catch (Exception e) {
+            return failed("Could not compile '" + file + "': " + e.getMessage(), e);
+        }
+    }
+
+    private CompilationResult getResult(Future<CompilationResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed("Compilation interrupted", e);
+        } catch (ExecutionException e) {
+            return failed("Compilation failed: " + e.getCause(), e);
+        }
+    }
+
+    private static CompilationResult failed(String message, Exception e) {
+        return CompilationResult.failed(List.of(Report.newError(Stage.OTHER, -1, -1, message, e)));
+    }
+
+    // Accepts a directory (searched recursively for .jmm files), a glob pattern,
+    // a list file prefixed by '@' with one path per line, or a comma separated list of files
+    public static List<File> collectInputs(String spec) {
+        if (spec.startsWith("@")) {
+            List<File> files = new ArrayList<>();
+            for (String line : SpecsIo.read(new File(spec.substring(1))).split("\\R")) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                files.add(new File(line));
+            }
+            return files;
+        }
+
+        if (spec.contains("*") || spec.contains("?") || spec.contains("{") || spec.contains("[")) {
+            return collectGlob(spec);
+        }
+
+        File file = new File(spec);
+        if (file.isDirectory()) {
+            return collectDirectory(file.toPath());
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String path : spec.split(",")) {
+            if (!path.isBlank()) files.add(new File(path.trim()));
+        }
+        return files;
+    }
+
+    private static List<File> collectDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".jmm"))
+                    .sorted()
+                    .map(Path::toFile)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<File> collectGlob(String glob) {
+        // Walk from the deepest directory that has no wildcards and match the rest of the pattern
+        int firstWildcard = glob.length();
+        for (char c : new char[]{'*', '?', '{', '['}) {
+            int index = glob.indexOf(c);
+            if (index != -1) firstWildcard = Math.min(firstWildcard, index);
+        }
+        int separator = Math.max(glob.lastIndexOf('/', firstWildcard), glob.lastIndexOf(File.separatorChar, firstWildcard));
+        Path base = separator == -1 ? Paths.get(".") : Paths.get(glob.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(separator + 1));
+
+        if (!Files.isDirectory(base)) return List.of();
+
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(base.relativize(path)))
+                    .sorted()
+                    .map(path -> separator == -1 ? base.relativize(path).toFile() : path.toFile())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
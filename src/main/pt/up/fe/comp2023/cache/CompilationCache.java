@@ -0,0 +1,366 @@
+package pt.up.fe.comp2023.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.JmmSerializer;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.comp2023.analysis.SymbolTableCR;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// On-disk cache of whole compilations, one JSON file per entry.
+// Entries are keyed by the source, the compiler build and the config keys that change the output,
+// and evicted in least recently used order once the directory grows past the size limit.
+// Several processes can share a directory, e.g. a compile server and command line runs.
+public class CompilationCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Bump when the entry layout changes
+    private static final String FORMAT_VERSION = "2";
+    private static final String EXTENSION = ".json";
+
+    // Config keys that only affect how the compiler is driven, not what it generates
+    private static final Set<String> IGNORED_KEYS = Set.of("inputFile", "outputDir", "batch", "server", "cache",
+            "cacheSize", "debug", "metrics", "parser", "parallel");
+
+    private static String compilerVersion;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Gson gson;
+    // Entry sizes in access order, the first entry is the least recently used
+    private final LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CompilationCache(File directory, long maxBytes) {
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        this.gson = new GsonBuilder().registerTypeAdapter(JmmNode.class, new JmmSerializer()).create();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.totalBytes = 0;
+
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create cache directory " + directory, e);
+        }
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        scan().forEach((key, size) -> {
+            entries.put(key, size);
+            totalBytes += size;
+        });
+    }
+
+    // Entry sizes on disk, least recently used first
+    private LinkedHashMap<String, Long> scan() {
+        LinkedHashMap<String, Long> found = new LinkedHashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparingLong(file -> file.toFile().lastModified()))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        found.put(name.substring(0, name.length() - EXTENSION.length()), file.toFile().length());
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cache directory " + directory, e);
+        }
+        return found;
+    }
+
+    // Other processes can share the directory, so entries they wrote are added to the index, as the least
+    // recently used ones, and entries they removed are dropped from it
+    private void rescan() {
+        LinkedHashMap<String, Long> found = scan();
+        // Copied in access order, the copy itself keeps that order
+        LinkedHashMap<String, Long> known = new LinkedHashMap<>(entries);
+        entries.clear();
+        totalBytes = 0;
+        found.forEach((key, size) -> {
+            if (!known.containsKey(key)) {
+                entries.put(key, size);
+                totalBytes += size;
+            }
+        });
+        for (String key : known.keySet()) {
+            Long size = found.get(key);
+            if (size != null) {
+                entries.put(key, size);
+                totalBytes += size;
+            }
+        }
+    }
+
+    public String key(String code, Map<String, String> config) {
+        Map<String, String> effectiveConfig = new TreeMap<>(config);
+        effectiveConfig.keySet().removeAll(IGNORED_KEYS);
+
+        StringBuilder keySource = new StringBuilder();
+        keySource.append(FORMAT_VERSION).append('\0').append(getCompilerVersion()).append('\0');
+        effectiveConfig.forEach((key, value) -> keySource.append(key).append('=').append(value).append('\0'));
+        keySource.append(code);
+        return sha256(keySource.toString());
+    }
+
+    public synchronized CompilationResult get(String key) {
+        Path file = entryPath(key);
+        if (!Files.isRegularFile(file)) {
+            forget(key);
+            misses++;
+            return null;
+        }
+        // The directory can be shared, so the entry may come from another process
+        if (!entries.containsKey(key)) {
+            long size = file.toFile().length();
+            entries.put(key, size);
+            totalBytes += size;
+        }
+
+        CompilationResult result;
+        try {
+            result = decode(JsonParser.parseString(Files.readString(file)).getAsJsonObject());
+        } catch (Exception e) {
+            // Unreadable or partially written entries are dropped and recompiled
+            remove(key);
+            misses++;
+            return null;
+        }
+
+        file.toFile().setLastModified(System.currentTimeMillis());
+        hits++;
+        return result;
+    }
+
+    public synchronized void put(String key, CompilationResult result) {
+        if (!result.isSuccess()) return;
+
+        byte[] bytes = gson.toJson(encode(result)).getBytes(StandardCharsets.UTF_8);
+        Path file = entryPath(key);
+        try {
+            // Write to a temporary file first so concurrent readers never see half an entry
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write cache entry " + file + ": " + e.getMessage());
+            return;
+        }
+
+        forget(key);
+        entries.put(key, (long) bytes.length);
+        totalBytes += bytes.length;
+        evict();
+    }
+
+    // The size limit covers the whole directory, including what other processes wrote to it
+    private void evict() {
+        rescan();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            totalBytes -= entry.getValue();
+            entryPath(entry.getKey()).toFile().delete();
+            evictions++;
+        }
+    }
+
+    private void remove(String key) {
+        forget(key);
+        entryPath(key).toFile().delete();
+    }
+
+    private void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), totalBytes);
+    }
+
+    private JsonObject encode(CompilationResult result) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("className", result.getClassName());
+        entry.add("ast", gson.toJsonTree(result.getRootNode(), JmmNode.class));
+        entry.add("symbolTable", encodeSymbolTable((SymbolTableCR) result.getSymbolTable()));
+        entry.addProperty("ollir", result.getOllirCode());
+        entry.addProperty("jasmin", result.getJasminCode());
+        if (result.getClassFile() != null) {
+            entry.addProperty("classFile", Base64.getEncoder().encodeToString(result.getClassFile()));
+        }
+
+        JsonArray reports = new JsonArray();
+        for (Report report : result.getReports()) {
+            JsonObject jsonReport = new JsonObject();
+            jsonReport.addProperty("type", report.getType().name());
+            jsonReport.addProperty("stage", report.getStage().name());
+            jsonReport.addProperty("line", report.getLine());
+            jsonReport.addProperty("column", report.getColumn());
+            jsonReport.addProperty("message", report.getMessage());
+            reports.add(jsonReport);
+        }
+        entry.add("reports", reports);
+        return entry;
+    }
+
+    private CompilationResult decode(JsonObject entry) {
+        List<Report> reports = new ArrayList<>();
+        for (var element : entry.getAsJsonArray("reports")) {
+            JsonObject jsonReport = element.getAsJsonObject();
+            reports.add(new Report(ReportType.valueOf(jsonReport.get("type").getAsString()),
+                    Stage.valueOf(jsonReport.get("stage").getAsString()), jsonReport.get("line").getAsInt(),
+                    jsonReport.get("column").getAsInt(), jsonReport.get("message").getAsString()));
+        }
+
+        String jasmin = entry.has("jasmin") ? entry.get("jasmin").getAsString() : null;
+        byte[] classFile = entry.has("classFile") ? Base64.getDecoder().decode(entry.get("classFile").getAsString()) : null;
+        return new CompilationResult(entry.get("className").getAsString(),
+                JmmNodeImpl.fromJson(entry.get("ast").toString()),
+                decodeSymbolTable(entry.getAsJsonObject("symbolTable")), entry.get("ollir").getAsString(),
+                jasmin, classFile, reports);
+    }
+
+    private JsonObject encodeSymbolTable(SymbolTableCR symbolTable) {
+        JsonObject table = new JsonObject();
+        table.addProperty("className", symbolTable.getClassName());
+        table.addProperty("super", symbolTable.getSuper());
+        table.add("imports", gson.toJsonTree(symbolTable.getImports()));
+        table.add("fields", encodeSymbols(symbolTable.getFields()));
+
+        JsonArray methods = new JsonArray();
+        for (String method : symbolTable.getMethods()) {
+            JsonObject jsonMethod = new JsonObject();
+            jsonMethod.addProperty("name", method);
+            jsonMethod.add("returnType", encodeType(symbolTable.getReturnType(method)));
+            jsonMethod.add("parameters", encodeSymbols(symbolTable.getParameters(method)));
+            jsonMethod.add("locals", encodeSymbols(symbolTable.getLocalVariables(method)));
+            methods.add(jsonMethod);
+        }
+        table.add("methods", methods);
+        return table;
+    }
+
+    private SymbolTableCR decodeSymbolTable(JsonObject table) {
+        SymbolTableCR symbolTable = new SymbolTableCR();
+        symbolTable.setClassName(table.get("className").getAsString());
+        symbolTable.setSuper(table.get("super").getAsString());
+        table.getAsJsonArray("imports").forEach(element -> symbolTable.addImport(element.getAsString()));
+        decodeSymbols(table.getAsJsonArray("fields")).forEach(symbolTable::addField);
+
+        for (var element : table.getAsJsonArray("methods")) {
+            JsonObject jsonMethod = element.getAsJsonObject();
+            String name = jsonMethod.get("name").getAsString();
+            symbolTable.addMethod(name, decodeType(jsonMethod.getAsJsonObject("returnType")),
+                    decodeSymbols(jsonMethod.getAsJsonArray("parameters")));
+            decodeSymbols(jsonMethod.getAsJsonArray("locals")).forEach(local -> symbolTable.addLocalVar(name, local));
+        }
+        return symbolTable;
+    }
+
+    private JsonArray encodeSymbols(List<Symbol> symbols) {
+        JsonArray array = new JsonArray();
+        for (Symbol symbol : symbols) {
+            JsonObject jsonSymbol = encodeType(symbol.getType());
+            jsonSymbol.addProperty("name", symbol.getName());
+            array.add(jsonSymbol);
+        }
+        return array;
+    }
+
+    private List<Symbol> decodeSymbols(JsonArray array) {
+        List<Symbol> symbols = new ArrayList<>();
+        for (var element : array) {
+            JsonObject jsonSymbol = element.getAsJsonObject();
+            symbols.add(new Symbol(decodeType(jsonSymbol), jsonSymbol.get("name").getAsString()));
+        }
+        return symbols;
+    }
+
+    private JsonObject encodeType(Type type) {
+        JsonObject jsonType = new JsonObject();
+        jsonType.addProperty("type", type.getName());
+        jsonType.addProperty("array", type.isArray());
+        return jsonType;
+    }
+
+    private Type decodeType(JsonObject jsonType) {
+        return new Type(jsonType.get("type").getAsString(), jsonType.get("array").getAsBoolean());
+    }
+
+    // Identifies the compiler build, so rebuilding the compiler invalidates every entry
+    private static synchronized String getCompilerVersion() {
+        if (compilerVersion != null) return compilerVersion;
+
+        StringBuilder fingerprint = new StringBuilder();
+        try {
+            Path location = Path.of(JmmCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                try (Stream<Path> files = Files.walk(location)) {
+                    files.filter(file -> file.toString().endsWith(".class")).sorted().forEach(file -> {
+                        File classFile = file.toFile();
+                        fingerprint.append(location.relativize(file)).append(':').append(classFile.length())
+                                .append(':').append(classFile.lastModified()).append('\n');
+                    });
+                }
+            } else {
+                File jar = location.toFile();
+                fingerprint.append(jar.getName()).append(':').append(jar.length()).append(':').append(jar.lastModified());
+            }
+        } catch (Exception e) {
+            fingerprint.append("unknown");
+        }
+
+        compilerVersion = sha256(fingerprint.toString());
+        return compilerVersion;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pt.up.fe.comp2023.generator;
+
+public class GeneratedProgram {
+    private final String className;
+    private final String code;
+    private final String expectedOutput;
+
+    public GeneratedProgram(String className, String code, String expectedOutput) {
+        this.className = className;
+        this.code = code;
+        this.expectedOutput = expectedOutput;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    // What the program prints when run, one "Result: <n>" line per method
+    public String getExpectedOutput() {
+        return expectedOutput;
+    }
+}
@@ -0,0 +1,457 @@
+package pt.up.fe.comp2023.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Generates random, well typed Java-- programs together with the output they print when run.
+// Only productions of Javamm.g4 are used, and every nested binary expression is parenthesized so the
+// result doesn't depend on operator precedence. Programs always terminate and never fail at run time:
+// loops count up to small constants, divisions are by non-zero constants, array indexes are in range
+// and methods only call methods declared before them.
+// Programs also stay inside what the OLLIR generator handles: a bare array read or length is never the
+// whole value of a return or of a field assignment, a bare length is never assigned to a local, and call
+// results are only stored in locals. Nested in a larger expression all of them are fine.
+public class ProgramGenerator {
+    private static final int ARRAY_SIZE = 8;
+    private static final int MAX_LOOP_BOUND = 3;
+    private static final int PARAMS = 2;
+
+    private final Random random;
+    private String className = "Generated";
+    private int fields = 2;
+    private int methods = 4;
+    private int statements = 8;
+    private int locals = 4;
+    private int expressionDepth = 3;
+    private int nesting = 2;
+    private boolean arrays = true;
+
+    public ProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public ProgramGenerator className(String className) {
+        this.className = className;
+        return this;
+    }
+
+    public ProgramGenerator fields(int fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    public ProgramGenerator methods(int methods) {
+        this.methods = Math.max(methods, 1);
+        return this;
+    }
+
+    // Statements at the top level of each method, nested blocks add more
+    public ProgramGenerator statements(int statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    // Number of int locals per method, each method also gets half as many boolean locals
+    public ProgramGenerator locals(int locals) {
+        this.locals = Math.max(locals, 1);
+        return this;
+    }
+
+    public ProgramGenerator expressionDepth(int expressionDepth) {
+        this.expressionDepth = Math.max(expressionDepth, 1);
+        return this;
+    }
+
+    // Maximum depth of nested if and while statements
+    public ProgramGenerator nesting(int nesting) {
+        this.nesting = Math.max(nesting, 0);
+        return this;
+    }
+
+    public ProgramGenerator arrays(boolean arrays) {
+        this.arrays = arrays;
+        return this;
+    }
+
+    public GeneratedProgram generate() {
+        List<MethodDecl> methodDecls = new ArrayList<>();
+        for (int m = 0; m < methods; m++) {
+            methodDecls.add(generateMethod(m));
+        }
+
+        List<Expr[]> mainCalls = new ArrayList<>();
+        for (int m = 0; m < methods; m++) {
+            mainCalls.add(new Expr[]{new IntLit(random.nextInt(10)), new IntLit(random.nextInt(10))});
+        }
+
+        String code = print(methodDecls, mainCalls);
+        String output = run(methodDecls, mainCalls);
+        return new GeneratedProgram(className, code, output);
+    }
+
+    // Model of the generated program
+
+    private interface Expr {
+    }
+
+    private record IntLit(int value) implements Expr {
+    }
+
+    private record BoolLit(boolean value) implements Expr {
+    }
+
+    private record Var(String name) implements Expr {
+    }
+
+    private record ArrayGet(String array, Expr index) implements Expr {
+    }
+
+    private record Length(String array) implements Expr {
+    }
+
+    private record Binary(String op, Expr left, Expr right) implements Expr {
+    }
+
+    private record Not(Expr operand) implements Expr {
+    }
+
+    private interface Stmt {
+    }
+
+    private record Assign(String var, Expr value) implements Stmt {
+    }
+
+    private record ArrayAssign(String array, Expr index, Expr value) implements Stmt {
+    }
+
+    private record Call(String var, int method, Expr[] args) implements Stmt {
+    }
+
+    private record NewArray(String var) implements Stmt {
+    }
+
+    private record If(Expr condition, List<Stmt> then, List<Stmt> otherwise) implements Stmt {
+    }
+
+    private record While(String counter, int bound, List<Stmt> body) implements Stmt {
+    }
+
+    private record MethodDecl(int index, List<String> intLocals, List<String> boolLocals, List<String> counters,
+                              List<Stmt> body, Expr result) {
+    }
+
+    // Generation
+
+    // Variables that can be read and written at some point of a method
+    private class Scope {
+        final int method;
+        final List<String> intVars = new ArrayList<>();
+        final List<String> boolVars = new ArrayList<>();
+        final List<String> activeCounters = new ArrayList<>();
+        boolean calledMethod = false;
+
+        Scope(int method) {
+            this.method = method;
+        }
+    }
+
+    private MethodDecl generateMethod(int index) {
+        Scope scope = new Scope(index);
+        List<String> intLocals = new ArrayList<>();
+        List<String> boolLocals = new ArrayList<>();
+        List<String> counters = new ArrayList<>();
+        for (int l = 0; l < locals; l++) intLocals.add("l" + l);
+        for (int b = 0; b < Math.max(locals / 2, 1); b++) boolLocals.add("b" + b);
+        for (int c = 0; c < nesting; c++) counters.add("c" + c);
+
+        for (int p = 0; p < PARAMS; p++) scope.intVars.add("p" + p);
+        for (int f = 0; f < fields; f++) scope.intVars.add("f" + f);
+
+        // Every local is assigned before it is read
+        List<Stmt> body = new ArrayList<>();
+        if (arrays) {
+            body.add(new NewArray("a"));
+        }
+        for (String local : intLocals) {
+            body.add(new Assign(local, storedExpr(scope, local, 1)));
+            scope.intVars.add(local);
+        }
+        for (String local : boolLocals) {
+            body.add(new Assign(local, boolExpr(scope, 1)));
+            scope.boolVars.add(local);
+        }
+
+        for (int s = 0; s < statements; s++) {
+            body.add(statement(scope, 0, 0));
+        }
+        return new MethodDecl(index, intLocals, boolLocals, counters, body, storedExpr(scope, null, expressionDepth));
+    }
+
+    private Stmt statement(Scope scope, int depth, int loopDepth) {
+        int choice = random.nextInt(10);
+        if (depth < nesting && choice == 0) {
+            return new If(boolExpr(scope, expressionDepth), block(scope, depth + 1, loopDepth),
+                    block(scope, depth + 1, loopDepth));
+        }
+        if (depth < nesting && loopDepth < nesting && choice == 1) {
+            String counter = "c" + loopDepth;
+            scope.activeCounters.add(counter);
+            List<Stmt> body = block(scope, depth + 1, loopDepth + 1);
+            scope.activeCounters.remove(counter);
+            return new While(counter, 1 + random.nextInt(MAX_LOOP_BOUND), body);
+        }
+        // At most one call per method, outside of loops, so the work done by a call stays linear
+        if (scope.method > 0 && locals > 0 && depth == 0 && !scope.calledMethod && choice == 2) {
+            scope.calledMethod = true;
+            Expr[] args = new Expr[PARAMS];
+            for (int p = 0; p < PARAMS; p++) args[p] = intExpr(scope, 1);
+            return new Call(pick(scope.intVars.subList(PARAMS + fields, scope.intVars.size())),
+                    random.nextInt(scope.method), args);
+        }
+        if (arrays && choice <= 4) {
+            return new ArrayAssign("a", index(scope), intExpr(scope, expressionDepth));
+        }
+        if (choice == 5 && !scope.boolVars.isEmpty()) {
+            return new Assign(pick(scope.boolVars), boolExpr(scope, expressionDepth));
+        }
+        String var = assignableInt(scope);
+        return new Assign(var, storedExpr(scope, var, expressionDepth));
+    }
+
+    private List<Stmt> block(Scope scope, int depth, int loopDepth) {
+        List<Stmt> stmts = new ArrayList<>();
+        int size = 1 + random.nextInt(3);
+        for (int s = 0; s < size; s++) {
+            stmts.add(statement(scope, depth, loopDepth));
+        }
+        return stmts;
+    }
+
+    // Parameters are left untouched, so they can be read everywhere
+    private String assignableInt(Scope scope) {
+        List<String> assignable = scope.intVars.subList(PARAMS, scope.intVars.size());
+        return pick(assignable.isEmpty() ? scope.intVars : assignable);
+    }
+
+    // Value stored in the given int variable, or returned when there is none
+    private Expr storedExpr(Scope scope, String var, int depth) {
+        boolean local = var != null && var.startsWith("l");
+        Expr expr = intExpr(scope, depth);
+        while (expr instanceof Length || (expr instanceof ArrayGet && !local)) {
+            expr = intExpr(scope, depth);
+        }
+        return expr;
+    }
+
+    private Expr index(Scope scope) {
+        if (!scope.activeCounters.isEmpty() && random.nextBoolean()) {
+            return new Var(pick(scope.activeCounters));
+        }
+        return new IntLit(random.nextInt(ARRAY_SIZE));
+    }
+
+    private Expr intExpr(Scope scope, int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(arrays ? 6 : 3)) {
+                case 0, 1 -> new Var(pick(scope.intVars));
+                case 2 -> new IntLit(random.nextInt(20));
+                case 3, 4 -> new ArrayGet("a", index(scope));
+                default -> new Length("a");
+            };
+        }
+        return switch (random.nextInt(4)) {
+            case 0 -> new Binary("+", intExpr(scope, depth - 1), intExpr(scope, depth - 1));
+            case 1 -> new Binary("-", intExpr(scope, depth - 1), intExpr(scope, depth - 1));
+            case 2 -> new Binary("*", intExpr(scope, depth - 1), intExpr(scope, depth - 1));
+            default -> new Binary("/", intExpr(scope, depth - 1), new IntLit(1 + random.nextInt(9)));
+        };
+    }
+
+    private Expr boolExpr(Scope scope, int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(4)) {
+                case 0 -> new BoolLit(random.nextBoolean());
+                case 1 -> scope.boolVars.isEmpty() ? new BoolLit(true) : new Var(pick(scope.boolVars));
+                default -> new Binary("<", intExpr(scope, Math.max(depth - 1, 1)), intExpr(scope, Math.max(depth - 1, 1)));
+            };
+        }
+        return switch (random.nextInt(4)) {
+            case 0 -> new Binary("&&", boolExpr(scope, depth - 1), boolExpr(scope, depth - 1));
+            case 1 -> new Not(boolExpr(scope, depth - 1));
+            default -> new Binary("<", intExpr(scope, depth - 1), intExpr(scope, depth - 1));
+        };
+    }
+
+    private <T> T pick(List<T> list) {
+        return list.get(random.nextInt(list.size()));
+    }
+
+    // Printing
+
+    private String print(List<MethodDecl> methodDecls, List<Expr[]> mainCalls) {
+        StringBuilder code = new StringBuilder();
+        code.append("import ioPlus;\n\n");
+        code.append("class ").append(className).append(" {\n");
+        for (int f = 0; f < fields; f++) {
+            code.append("    int f").append(f).append(";\n");
+        }
+        code.append("\n");
+
+        for (MethodDecl method : methodDecls) {
+            code.append("    public int m").append(method.index()).append("(");
+            for (int p = 0; p < PARAMS; p++) {
+                code.append(p > 0 ? ", " : "").append("int p").append(p);
+            }
+            code.append(") {\n");
+            for (String local : method.intLocals()) code.append("        int ").append(local).append(";\n");
+            for (String local : method.boolLocals()) code.append("        boolean ").append(local).append(";\n");
+            for (String counter : method.counters()) code.append("        int ").append(counter).append(";\n");
+            if (arrays) code.append("        int[] a;\n");
+
+            for (Stmt stmt : method.body()) {
+                print(stmt, code, "        ");
+            }
+            code.append("        return ").append(printTop(method.result())).append(";\n");
+            code.append("    }\n\n");
+        }
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("        ").append(className).append(" g;\n");
+        code.append("        int r;\n");
+        code.append("        g = new ").append(className).append("();\n");
+        for (int m = 0; m < mainCalls.size(); m++) {
+            code.append("        r = g.m").append(m).append("(").append(printArgs(mainCalls.get(m))).append(");\n");
+            code.append("        ioPlus.printResult(r);\n");
+        }
+        code.append("    }\n");
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private void print(Stmt stmt, StringBuilder code, String indent) {
+        if (stmt instanceof Assign assign) {
+            code.append(indent).append(assign.var()).append(" = ").append(printTop(assign.value())).append(";\n");
+        } else if (stmt instanceof ArrayAssign assign) {
+            code.append(indent).append(assign.array()).append("[").append(print(assign.index())).append("] = ")
+                    .append(printTop(assign.value())).append(";\n");
+        } else if (stmt instanceof NewArray newArray) {
+            code.append(indent).append(newArray.var()).append(" = new int[").append(ARRAY_SIZE).append("];\n");
+        } else if (stmt instanceof Call call) {
+            code.append(indent).append(call.var()).append(" = this.m").append(call.method()).append("(")
+                    .append(printArgs(call.args())).append(");\n");
+        } else if (stmt instanceof If ifStmt) {
+            code.append(indent).append("if (").append(printTop(ifStmt.condition())).append(") {\n");
+            for (Stmt s : ifStmt.then()) print(s, code, indent + "    ");
+            code.append(indent).append("} else {\n");
+            for (Stmt s : ifStmt.otherwise()) print(s, code, indent + "    ");
+            code.append(indent).append("}\n");
+        } else if (stmt instanceof While loop) {
+            code.append(indent).append(loop.counter()).append(" = 0;\n");
+            code.append(indent).append("while (").append(loop.counter()).append(" < ").append(loop.bound()).append(") {\n");
+            for (Stmt s : loop.body()) print(s, code, indent + "    ");
+            code.append(indent).append("    ").append(loop.counter()).append(" = ").append(loop.counter()).append(" + 1;\n");
+            code.append(indent).append("}\n");
+        }
+    }
+
+    private String printArgs(Expr[] args) {
+        List<String> printed = new ArrayList<>();
+        for (Expr arg : args) printed.add(printTop(arg));
+        return String.join(", ", printed);
+    }
+
+    // The outermost binary expression of a statement needs no parentheses
+    private String printTop(Expr expr) {
+        String printed = print(expr);
+        return expr instanceof Binary ? printed.substring(1, printed.length() - 1) : printed;
+    }
+
+    private String print(Expr expr) {
+        if (expr instanceof IntLit lit) return String.valueOf(lit.value());
+        if (expr instanceof BoolLit lit) return String.valueOf(lit.value());
+        if (expr instanceof Var var) return var.name();
+        if (expr instanceof ArrayGet get) return get.array() + "[" + print(get.index()) + "]";
+        if (expr instanceof Length length) return length.array() + ".length";
+        if (expr instanceof Not not) return "!(" + print(not.operand()) + ")";
+        Binary binary = (Binary) expr;
+        return "(" + print(binary.left()) + " " + binary.op() + " " + print(binary.right()) + ")";
+    }
+
+    // Evaluation, with the same int semantics as the JVM
+
+    private String run(List<MethodDecl> methodDecls, List<Expr[]> mainCalls) {
+        Map<String, Object> object = new HashMap<>();
+        for (int f = 0; f < fields; f++) object.put("f" + f, 0);
+
+        StringBuilder output = new StringBuilder();
+        for (int m = 0; m < mainCalls.size(); m++) {
+            int[] args = new int[PARAMS];
+            for (int p = 0; p < PARAMS; p++) args[p] = ((IntLit) mainCalls.get(m)[p]).value();
+            output.append("Result: ").append(call(methodDecls, m, args, object)).append("\n");
+        }
+        return output.toString();
+    }
+
+    private int call(List<MethodDecl> methodDecls, int index, int[] args, Map<String, Object> object) {
+        MethodDecl method = methodDecls.get(index);
+        Map<String, Object> frame = new HashMap<>();
+        for (int p = 0; p < PARAMS; p++) frame.put("p" + p, args[p]);
+
+        for (Stmt stmt : method.body()) exec(methodDecls, stmt, frame, object);
+        return (int) eval(method.result(), frame, object);
+    }
+
+    private void exec(List<MethodDecl> methodDecls, Stmt stmt, Map<String, Object> frame, Map<String, Object> object) {
+        if (stmt instanceof Assign assign) {
+            store(assign.var(), eval(assign.value(), frame, object), frame, object);
+        } else if (stmt instanceof ArrayAssign assign) {
+            int[] array = (int[]) frame.get(assign.array());
+            int index = (int) eval(assign.index(), frame, object);
+            array[index] = (int) eval(assign.value(), frame, object);
+        } else if (stmt instanceof NewArray newArray) {
+            frame.put(newArray.var(), new int[ARRAY_SIZE]);
+        } else if (stmt instanceof Call call) {
+            int[] args = new int[PARAMS];
+            for (int p = 0; p < PARAMS; p++) args[p] = (int) eval(call.args()[p], frame, object);
+            store(call.var(), call(methodDecls, call.method(), args, object), frame, object);
+        } else if (stmt instanceof If ifStmt) {
+            List<Stmt> branch = (boolean) eval(ifStmt.condition(), frame, object) ? ifStmt.then() : ifStmt.otherwise();
+            for (Stmt s : branch) exec(methodDecls, s, frame, object);
+        } else if (stmt instanceof While loop) {
+            for (frame.put(loop.counter(), 0); (int) frame.get(loop.counter()) < loop.bound();
+                 frame.put(loop.counter(), (int) frame.get(loop.counter()) + 1)) {
+                for (Stmt s : loop.body()) exec(methodDecls, s, frame, object);
+            }
+        }
+    }
+
+    private void store(String var, Object value, Map<String, Object> frame, Map<String, Object> object) {
+        if (object.containsKey(var)) object.put(var, value);
+        else frame.put(var, value);
+    }
+
+    private Object eval(Expr expr, Map<String, Object> frame, Map<String, Object> object) {
+        if (expr instanceof IntLit lit) return lit.value();
+        if (expr instanceof BoolLit lit) return lit.value();
+        if (expr instanceof Var var) return frame.containsKey(var.name()) ? frame.get(var.name()) : object.get(var.name());
+        if (expr instanceof ArrayGet get) return ((int[]) frame.get(get.array()))[(int) eval(get.index(), frame, object)];
+        if (expr instanceof Length length) return ((int[]) frame.get(length.array())).length;
+        if (expr instanceof Not not) return !(boolean) eval(not.operand(), frame, object);
+
+        Binary binary = (Binary) expr;
+        Object left = eval(binary.left(), frame, object);
+        Object right = eval(binary.right(), frame, object);
+        return switch (binary.op()) {
+            case "+" -> (int) left + (int) right;
+            case "-" -> (int) left - (int) right;
+            case "*" -> (int) left * (int) right;
+            case "/" -> (int) left / (int) right;
+            case "<" -> (int) left < (int) right;
+            case "&&" -> (boolean) left && (boolean) right;
+            default -> throw new IllegalStateException("Unknown operator " + binary.op());
+        };
+    }
+}
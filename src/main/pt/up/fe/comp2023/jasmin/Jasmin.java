@@ -9,20 +9,26 @@ import pt.up.fe.comp2023.jasmin.operations.CallOps.InvokeSpecialOps;
 import pt.up.fe.comp2023.jasmin.operations.CallOps.InvokeStaticOps;
 import pt.up.fe.comp2023.jasmin.operations.CallOps.InvokeVirtualOps;
 import pt.up.fe.comp2023.jasmin.operations.CallOps.NewOps;
-
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Jasmin implements JasminBackend {
     private ClassUnit OllirCode;
     private final HashMap<String, String>  importsMap = new HashMap<>();
     private String defaultSuperClass = "java/lang/Object";
-    private int numLabel = 0;
-
-    private int stackSize = 0;
-    private int maxStackSize = 0;
-    private Boolean Flag = false;
 
     public Jasmin(){
 
@@ -30,17 +36,43 @@ public class Jasmin implements JasminBackend {
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
-        this.OllirCode = ollirResult.getOllirClass();
-
         StringBuilder jasminCode = new StringBuilder();
+        try {
+            this.writeJasmin(ollirResult, jasminCode);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new JasminResult(ollirResult, jasminCode.toString(), Collections.emptyList());
+    }
+
+    // Writes the class to the stream as it is generated, only one method is held in memory at a time
+    // unless the methods are emitted in parallel
+    public void writeJasmin(OllirResult ollirResult, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.writeJasmin(ollirResult, writer);
+        writer.flush();
+    }
+
+    public void writeJasmin(OllirResult ollirResult, Appendable out) throws IOException {
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("jasmin");
+        try {
+            this.writeClass(ollirResult, out);
+        } finally {
+            phase.close();
+        }
+    }
+
+    private void writeClass(OllirResult ollirResult, Appendable out) throws IOException {
+        this.OllirCode = ollirResult.getOllirClass();
 
         for (String importString : this.OllirCode.getImports()) {
             var splittedImport = importString.split("\\.");
             this.importsMap.put(splittedImport.length == 0 ? importString : splittedImport[splittedImport.length - 1], String.join("/", splittedImport));
         }
 
-        jasminCode.append(this.jasminHeader());
-        jasminCode.append(this.jasminFields());
+        out.append(this.jasminHeader());
+        out.append(this.jasminFields());
         boolean hasContructor = false;
         for (Method method : this.OllirCode.getMethods()) {
             if(method.isConstructMethod()){
@@ -52,15 +84,46 @@ public class Jasmin implements JasminBackend {
         }
 
         if(!hasContructor){
-            jasminCode.append(this.defaultConstructor());
+            out.append(this.defaultConstructor());
+        }
+
+        // Each method is emitted on its own context and only reads the class level state set up above,
+        // so with "parallel" the methods are emitted at the same time and written in declaration order
+        boolean parallel = ollirResult.getConfig().getOrDefault("parallel", "false").equals("true");
+        boolean recordMetrics = CompilerMetrics.isEnabled();
+        if (parallel) {
+            List<MethodCode> methods = this.OllirCode.getMethods().parallelStream()
+                    .map(method -> this.emitMethod(method, recordMetrics))
+                    .toList();
+            for (MethodCode method : methods) {
+                this.appendMethod(method, out);
+            }
+        } else {
+            for (Method method : this.OllirCode.getMethods()) {
+                this.appendMethod(this.emitMethod(method, recordMetrics), out);
+            }
         }
+    }
 
-        for(Method method: this.OllirCode.getMethods()){
-            jasminCode.append(this.jasminMethodParser(method));
-            resetStack();
+    private record MethodCode(String code, long instructions) {
+    }
+
+    private MethodCode emitMethod(Method method, boolean recordMetrics) {
+        MethodContext context = new MethodContext(this, method.isConstructMethod(), recordMetrics);
+        StringBuilder code = new StringBuilder();
+        try {
+            this.writeMethod(method, context, code);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return new MethodCode(code.toString(), context.getInstructions());
+    }
 
-        return new JasminResult(ollirResult, jasminCode.toString(), Collections.emptyList());
+    // Metrics belong to the calling thread, so they are only counted when the method is written out
+    private void appendMethod(MethodCode method, Appendable out) throws IOException {
+        CompilerMetrics.count("methods", 1);
+        CompilerMetrics.count("instructions", method.instructions());
+        out.append(method.code());
     }
     public String jasminHeader(){
         StringBuilder code = new StringBuilder();
@@ -141,6 +204,12 @@ public class Jasmin implements JasminBackend {
     }
 
     public String jasminMethodParser(Method method){
+        return this.emitMethod(method, CompilerMetrics.isEnabled()).code();
+    }
+
+    // The stack limit is only known after the body is generated, so the instructions are kept
+    // until the end of the method and written after the header
+    private void writeMethod(Method method, MethodContext context, Appendable out) throws IOException {
         String methodSpec = ".method ";
         StringBuilder code = new StringBuilder();
         code.append(methodSpec);
@@ -159,43 +228,50 @@ public class Jasmin implements JasminBackend {
 
         if (method.isConstructMethod()) {
             code.append("public <init>(");
-            Flag = true;
         } else {
             code.append(method.getMethodName()).append('(');
         }
         code.append(this.getParams(method));
-        if(!method.isConstructMethod()){
-            code.append("\t.limit stack €STACK-LIMIT€\n");
-            code.append(getLocalLimit(method.getVarTable()));
+
+        Map<Instruction, List<String>> labels = new IdentityHashMap<>();
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            labels.computeIfAbsent(label.getValue(), k -> new ArrayList<>()).add(label.getKey());
         }
 
+        List<String> body = new ArrayList<>();
         boolean hasReturnInstruction = false;
         for (Instruction instruction : method.getInstructions()) {
-            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
-                if (label.getValue().equals(instruction)) {
-                    code.append(label.getKey()).append(":\n");
-                }
+            for (String label : labels.getOrDefault(instruction, Collections.emptyList())) {
+                body.add(label + ":\n");
             }
             if (instruction instanceof ReturnInstruction) {
                 hasReturnInstruction = true;
             }
-            code.append(this.routeInstruction(instruction, method.getVarTable(), method.getMethodName()));
-            if(!Flag && instruction instanceof CallInstruction i){
+            body.add(this.routeInstruction(instruction, method.getVarTable(), method.getMethodName(), context));
+            if(!context.isConstructor() && instruction instanceof CallInstruction i){
                 if(i.getReturnType().getTypeOfElement() != ElementType.VOID
                         &&(i.getInvocationType() == CallType.invokestatic ||
                         i.getInvocationType() == CallType.invokespecial ||
                         i.getInvocationType() == CallType.invokevirtual)){
-                    code.append("\tpop\n");
+                    body.add("\tpop\n");
                 }
             }
         }
 
         if (!hasReturnInstruction) {
-            code.append("\treturn\n");
+            body.add("\treturn\n");
         }
-        code.append(".end method\n\n");
-        Flag = false;
-        return code.toString().replaceFirst("€STACK-LIMIT€",Integer.toString(this.maxStackSize));
+        context.countInstructions(body);
+
+        out.append(code);
+        if(!method.isConstructMethod()){
+            out.append("\t.limit stack ").append(Integer.toString(context.getMaxStackSize())).append("\n");
+            out.append(getLocalLimit(method.getVarTable()));
+        }
+        for (String instructionCode : body) {
+            out.append(instructionCode);
+        }
+        out.append(".end method\n\n");
     }
     public String getParams(Method method){
         StringBuilder code = new StringBuilder();
@@ -206,43 +282,43 @@ public class Jasmin implements JasminBackend {
 
         return code.toString();
     }
-    public String CallRouter(CallInstruction instruction, HashMap<String, Descriptor> varTable){
+    public String CallRouter(CallInstruction instruction, HashMap<String, Descriptor> varTable, MethodContext context){
         StringBuilder jasminCode = new StringBuilder();
 
         int lowerStack = 0;
 
         switch (instruction.getInvocationType()) {
             case invokevirtual -> {
-                InvokeVirtualOps code = new InvokeVirtualOps(instruction, varTable, this.numLabel, this.OllirCode.getClassName(), this.importsMap, this);
+                InvokeVirtualOps code = new InvokeVirtualOps(instruction, varTable, context.getNumLabel(), this.OllirCode.getClassName(), this.importsMap, context);
                 jasminCode.append(code.toJasmin());
 
             }
             case invokespecial -> {
-                InvokeSpecialOps code = new InvokeSpecialOps(instruction, varTable, this.numLabel, this.OllirCode.getSuperClass(), this.importsMap, this);
+                InvokeSpecialOps code = new InvokeSpecialOps(instruction, varTable, context.getNumLabel(), this.OllirCode.getSuperClass(), this.importsMap, context);
                 String code2 = code.toJasmin();
-                if (Flag) {
-                    Flag = false;
+                if (context.isConstructor()) {
+                    context.superCallEmitted();
                     code2 = code2.replaceFirst("invokespecial", "invokenonvirtual");
                 }
                 jasminCode.append(code2);
 
             }
             case invokestatic -> {
-                InvokeStaticOps code = new InvokeStaticOps(instruction, varTable, this.numLabel, this.OllirCode.getClassName(), this.importsMap, this);
+                InvokeStaticOps code = new InvokeStaticOps(instruction, varTable, context.getNumLabel(), this.OllirCode.getClassName(), this.importsMap, context);
                 jasminCode.append(code.toJasmin());
 
                 lowerStack -= 1;
             }
             case NEW -> {
-                NewOps code = new NewOps(instruction, varTable, this.numLabel, this.OllirCode.getSuperClass(), this.importsMap, this);
+                NewOps code = new NewOps(instruction, varTable, context.getNumLabel(), this.OllirCode.getSuperClass(), this.importsMap, context);
                 jasminCode.append(code.toJasmin());
             }
             case ldc -> {
-                SingleOpsCode code = new SingleOpsCode(instruction, varTable, this.numLabel, this);
+                SingleOpsCode code = new SingleOpsCode(instruction, varTable, context.getNumLabel(), context);
                 jasminCode.append(code.toJasmin());
             }
             case arraylength -> {
-                SingleOpsCode code = new SingleOpsCode(instruction, varTable, this.numLabel, this);
+                SingleOpsCode code = new SingleOpsCode(instruction, varTable, context.getNumLabel(), context);
                 jasminCode.append(code.toJasmin()).append("\tarraylength\n");
             }
         }
@@ -256,14 +332,14 @@ public class Jasmin implements JasminBackend {
             else if (!returnNonVoid) lowerStack = 1;
         }
         for(int a = 0; a < lowerStack;a++){
-            lowerStackSize();
+            context.lowerStackSize();
         }
         return jasminCode.toString();
     }
-    public String routeInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, String MethodName){
+    public String routeInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, String MethodName, MethodContext context){
 
         if (instruction instanceof CallInstruction) {
-            return CallRouter((CallInstruction) instruction, varTable);
+            return CallRouter((CallInstruction) instruction, varTable, context);
         }
 
         else if (instruction instanceof GotoInstruction) {
@@ -271,62 +347,62 @@ public class Jasmin implements JasminBackend {
         }
 
         else if (instruction instanceof AssignInstruction) {
-            AssignOpsCode code = new AssignOpsCode((AssignInstruction) instruction, varTable, this.numLabel, MethodName,this);
+            AssignOpsCode code = new AssignOpsCode((AssignInstruction) instruction, varTable, context.getNumLabel(), MethodName,context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
         else if (instruction instanceof ReturnInstruction) {
-            ReturnOpsCode code = new ReturnOpsCode((ReturnInstruction) instruction, varTable, this.numLabel, this);
+            ReturnOpsCode code = new ReturnOpsCode((ReturnInstruction) instruction, varTable, context.getNumLabel(), context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
         else if (instruction instanceof SingleOpInstruction) {
-            SingleOpsCode code = new SingleOpsCode(instruction, varTable, this.numLabel,this);
+            SingleOpsCode code = new SingleOpsCode(instruction, varTable, context.getNumLabel(),context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
 
         else if (instruction instanceof GetFieldInstruction) {
             GetFieldOpsCode code = new GetFieldOpsCode(instruction, varTable,
-                    this.numLabel,this,this.OllirCode.getClassName(),this.importsMap);
+                    context.getNumLabel(),context,this.OllirCode.getClassName(),this.importsMap);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
 
         else if (instruction instanceof PutFieldInstruction) {
             PutFieldOpsCode code = new PutFieldOpsCode(instruction, varTable,
-                    this.numLabel,this,this.OllirCode.getClassName(),this.importsMap);
+                    context.getNumLabel(),context,this.OllirCode.getClassName(),this.importsMap);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
         else if (instruction instanceof BinaryOpInstruction) {
-            BinaryOpsCode code = new BinaryOpsCode(instruction, varTable, this.numLabel,this);
+            BinaryOpsCode code = new BinaryOpsCode(instruction, varTable, context.getNumLabel(),context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
         else if (instruction instanceof UnaryOpInstruction) {
-            UnaryOpsCode code = new UnaryOpsCode((UnaryOpInstruction) instruction, varTable, this.numLabel,this);
+            UnaryOpsCode code = new UnaryOpsCode((UnaryOpInstruction) instruction, varTable, context.getNumLabel(),context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
         else if (instruction instanceof CondBranchInstruction) {
-            ConditionalBranchOpsCode code = new ConditionalBranchOpsCode(instruction, varTable, this.numLabel,this);
+            ConditionalBranchOpsCode code = new ConditionalBranchOpsCode(instruction, varTable, context.getNumLabel(),context);
             String result = code.toJasmin();
-            this.numLabel = code.getLabelCounter() + this.numLabel;
+            context.addLabels(code.getLabelCounter());
             return result;
         }
 
@@ -342,18 +418,4 @@ public class Jasmin implements JasminBackend {
         }
         return "\t.limit locals " + (limit + 1) + "\n";
     }
-    private void resetStack(){
-        this.stackSize = 0;
-        this.maxStackSize = 0;
-    }
-    public void growStackSize(int size){
-        this.stackSize = this.stackSize + size;
-        if(this.stackSize > this.maxStackSize){
-            this.maxStackSize = this.stackSize;
-        }
-    }
-    public void lowerStackSize(){
-        this.stackSize = this.stackSize - 1;
-    }
 }
-
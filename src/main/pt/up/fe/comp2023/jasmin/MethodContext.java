@@ -0,0 +1,78 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Type;
+
+import java.util.HashMap;
+import java.util.List;
+
+// State of the method being emitted. Every method gets its own, so methods can be emitted on different
+// threads, while the class level information kept in Jasmin is only read.
+public class MethodContext {
+    private final Jasmin jasmin;
+    private int numLabel = 0;
+    private int stackSize = 0;
+    private int maxStackSize = 0;
+    // Set in constructors until the super constructor call is emitted
+    private boolean constructor;
+    // Metrics are per thread, so the instructions are counted here and added by the thread writing the class
+    private final boolean recordMetrics;
+    private long instructions = 0;
+
+    public MethodContext(Jasmin jasmin, boolean constructor, boolean recordMetrics) {
+        this.jasmin = jasmin;
+        this.constructor = constructor;
+        this.recordMetrics = recordMetrics;
+    }
+
+    public String getParseType(Type type) {
+        return this.jasmin.getParseType(type);
+    }
+
+    public String routeInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, String MethodName) {
+        return this.jasmin.routeInstruction(instruction, varTable, MethodName, this);
+    }
+
+    public int getNumLabel() {
+        return numLabel;
+    }
+
+    public void addLabels(int labels) {
+        this.numLabel = this.numLabel + labels;
+    }
+
+    public boolean isConstructor() {
+        return constructor;
+    }
+
+    public void superCallEmitted() {
+        this.constructor = false;
+    }
+
+    public int getMaxStackSize() {
+        return maxStackSize;
+    }
+
+    public void growStackSize(int size){
+        this.stackSize = this.stackSize + size;
+        if(this.stackSize > this.maxStackSize){
+            this.maxStackSize = this.stackSize;
+        }
+    }
+
+    public void lowerStackSize(){
+        this.stackSize = this.stackSize - 1;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public void countInstructions(List<String> body) {
+        if (!recordMetrics) return;
+        for (String instructionCode : body) {
+            this.instructions += instructionCode.lines().filter(line -> line.startsWith("\t")).count();
+        }
+    }
+}
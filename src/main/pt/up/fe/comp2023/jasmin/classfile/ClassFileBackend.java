@@ -0,0 +1,606 @@
+package pt.up.fe.comp2023.jasmin.classfile;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.classfile.CodeBuilder.Label;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes the class file directly from the OLLIR class, without going through Jasmin text.
+// Instruction selection follows the Jasmin backend, which stays the reference implementation.
+public class ClassFileBackend implements JasminBackend {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private ClassUnit ollirClass;
+    private ConstantPool pool;
+    private final HashMap<String, String> importsMap = new HashMap<>();
+    private String thisClass;
+    private String superClass = "java/lang/Object";
+
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+        this.ollirClass = ollirResult.getOllirClass();
+        this.pool = new ConstantPool();
+
+        for (String importString : ollirClass.getImports()) {
+            var splittedImport = importString.split("\\.");
+            this.importsMap.put(splittedImport[splittedImport.length - 1], String.join("/", splittedImport));
+        }
+        this.thisClass = ollirClass.getClassName();
+        if (ollirClass.getSuperClass() != null) {
+            this.superClass = className(ollirClass.getSuperClass());
+        }
+
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("classfile");
+        try {
+            byte[] bytes = writeClass();
+            CompilerMetrics.count("bytes", bytes.length);
+            return new ClassFileResult(ollirResult, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            phase.close();
+        }
+    }
+
+    private byte[] writeClass() throws IOException {
+        // The pool is only complete after the members are written, so they go to a separate buffer
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(members);
+
+        out.writeShort(ollirClass.getFields().size());
+        for (Field field : ollirClass.getFields()) {
+            int access = accessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) access |= ACC_STATIC;
+            if (field.isFinalField()) access |= ACC_FINAL;
+            out.writeShort(access);
+            out.writeShort(pool.utf8(field.getFieldName()));
+            out.writeShort(pool.utf8(descriptor(field.getFieldType())));
+            out.writeShort(0);
+        }
+
+        long constructors = ollirClass.getMethods().stream().filter(Method::isConstructMethod).count();
+        if (constructors > 1) {
+            throw new RuntimeException("2 constructors");
+        }
+        out.writeShort(ollirClass.getMethods().size() + (constructors == 0 ? 1 : 0));
+        if (constructors == 0) {
+            writeDefaultConstructor(out);
+        }
+        for (Method method : ollirClass.getMethods()) {
+            writeMethod(method, out);
+        }
+
+        // No class attributes
+        out.writeShort(0);
+
+        int thisIndex = pool.classRef(thisClass);
+        int superIndex = pool.classRef(superClass);
+
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(classFile);
+        header.writeInt(MAGIC);
+        header.writeShort(0);
+        header.writeShort(MAJOR_VERSION);
+        pool.write(header);
+        header.writeShort(ACC_PUBLIC | ACC_SUPER);
+        header.writeShort(thisIndex);
+        header.writeShort(superIndex);
+        header.writeShort(0);
+        members.writeTo(header);
+        return classFile.toByteArray();
+    }
+
+    private void writeDefaultConstructor(DataOutputStream out) throws IOException {
+        CodeBuilder code = new CodeBuilder(pool, thisClass);
+        code.load(0, false);
+        code.invoke(CodeBuilder.INVOKESPECIAL, superClass, "<init>", "()V", 0, null);
+        code.returnInsn(CodeBuilder.RETURN);
+        code.finish(new VerificationType[]{VerificationType.UNINITIALIZED_THIS});
+
+        writeMethodInfo(out, ACC_PUBLIC, "<init>", "()V", code);
+    }
+
+    private void writeMethod(Method method, DataOutputStream out) throws IOException {
+        int access = accessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) access |= ACC_STATIC;
+        if (method.isFinalMethod()) access |= ACC_FINAL;
+
+        String name = method.getMethodName();
+        if (method.isConstructMethod()) {
+            access = ACC_PUBLIC;
+            name = "<init>";
+        }
+
+        StringBuilder methodDescriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            methodDescriptor.append(descriptor(param.getType()));
+        }
+        methodDescriptor.append(')').append(descriptor(method.getReturnType()));
+
+        CodeBuilder code = new MethodWriter(method).write();
+        writeMethodInfo(out, access, name, methodDescriptor.toString(), code);
+    }
+
+    private void writeMethodInfo(DataOutputStream out, int access, String name, String descriptor, CodeBuilder code)
+            throws IOException {
+        CompilerMetrics.count("methods", 1);
+        CompilerMetrics.count("instructions", code.getInstructionCount());
+
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(1);
+
+        byte[] bytecode = code.getCode();
+        byte[] stackMapTable = code.getStackMapTable();
+        int codeAttributeIndex = pool.utf8("Code");
+        int stackMapIndex = stackMapTable != null ? pool.utf8("StackMapTable") : 0;
+
+        int attributeLength = 2 + 2 + 4 + bytecode.length + 2 + 2;
+        if (stackMapTable != null) attributeLength += 2 + 4 + stackMapTable.length;
+
+        out.writeShort(codeAttributeIndex);
+        out.writeInt(attributeLength);
+        out.writeShort(code.getMaxStack());
+        out.writeShort(code.getMaxLocals());
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        // No exception table
+        out.writeShort(0);
+        if (stackMapTable != null) {
+            out.writeShort(1);
+            out.writeShort(stackMapIndex);
+            out.writeInt(stackMapTable.length);
+            out.write(stackMapTable);
+        } else {
+            out.writeShort(0);
+        }
+    }
+
+    private int accessFlags(AccessModifiers modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            default -> 0;
+        };
+    }
+
+    private String className(String name) {
+        return importsMap.getOrDefault(name, name);
+    }
+
+    private String descriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case ARRAYREF -> "[" + descriptor(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS -> "L" + className(((ClassType) type).getName()) + ";";
+            case THIS -> "L" + thisClass + ";";
+        };
+    }
+
+    private VerificationType verificationType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> VerificationType.INTEGER;
+            case STRING -> VerificationType.object("java/lang/String");
+            case ARRAYREF -> VerificationType.object(descriptor(type));
+            case OBJECTREF, CLASS -> VerificationType.object(className(((ClassType) type).getName()));
+            case THIS -> VerificationType.object(thisClass);
+            case VOID -> null;
+        };
+    }
+
+    private static boolean isInt(Type type) {
+        return type.getTypeOfElement() == ElementType.INT32 || type.getTypeOfElement() == ElementType.BOOLEAN;
+    }
+
+    // Code generation state of a single method
+    private class MethodWriter {
+        private final Method method;
+        private final HashMap<String, Descriptor> varTable;
+        private final CodeBuilder code;
+        private final Map<String, Label> labels = new HashMap<>();
+
+        MethodWriter(Method method) {
+            this.method = method;
+            this.varTable = method.getVarTable();
+            this.code = new CodeBuilder(pool, thisClass);
+        }
+
+        CodeBuilder write() {
+            Map<Instruction, List<String>> labelsOf = new IdentityHashMap<>();
+            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+                labelsOf.computeIfAbsent(label.getValue(), k -> new ArrayList<>()).add(label.getKey());
+            }
+
+            boolean hasReturnInstruction = false;
+            for (Instruction instruction : method.getInstructions()) {
+                for (String label : labelsOf.getOrDefault(instruction, List.of())) {
+                    code.placeLabel(label(label));
+                }
+                if (instruction instanceof ReturnInstruction) {
+                    hasReturnInstruction = true;
+                }
+                routeInstruction(instruction);
+
+                // Results of calls used as statements are discarded
+                if (instruction instanceof CallInstruction call && pushesValue(call)) {
+                    code.op(CodeBuilder.POP, 1, null);
+                }
+            }
+            if (!hasReturnInstruction) {
+                code.returnInsn(CodeBuilder.RETURN);
+            }
+
+            for (Descriptor descriptor : varTable.values()) {
+                code.reserveLocals(descriptor.getVirtualReg() + 1);
+            }
+            code.finish(initialLocals());
+            return code;
+        }
+
+        private VerificationType[] initialLocals() {
+            List<VerificationType> locals = new ArrayList<>();
+            if (!method.isStaticMethod()) {
+                locals.add(method.isConstructMethod() ? VerificationType.UNINITIALIZED_THIS : VerificationType.object(thisClass));
+            }
+            for (Element param : method.getParams()) {
+                locals.add(verificationType(param.getType()));
+            }
+            return locals.toArray(new VerificationType[0]);
+        }
+
+        private Label label(String name) {
+            return labels.computeIfAbsent(name, k -> code.newLabel());
+        }
+
+        private boolean pushesValue(CallInstruction call) {
+            return switch (call.getInvocationType()) {
+                case invokestatic, invokevirtual, invokespecial ->
+                        call.getReturnType().getTypeOfElement() != ElementType.VOID;
+                case NEW, arraylength, ldc -> true;
+                default -> false;
+            };
+        }
+
+        private void routeInstruction(Instruction instruction) {
+            if (instruction instanceof CallInstruction call) {
+                writeCall(call);
+            } else if (instruction instanceof GotoInstruction gotoInstruction) {
+                code.jump(CodeBuilder.GOTO, label(gotoInstruction.getLabel()));
+            } else if (instruction instanceof AssignInstruction assign) {
+                writeAssign(assign);
+            } else if (instruction instanceof ReturnInstruction ret) {
+                writeReturn(ret);
+            } else if (instruction instanceof SingleOpInstruction singleOp) {
+                loadElement(singleOp.getSingleOperand());
+            } else if (instruction instanceof GetFieldInstruction getField) {
+                loadElement(getField.getFirstOperand());
+                Element field = getField.getSecondOperand();
+                code.field(CodeBuilder.GETFIELD, thisClass, ((Operand) field).getName(), descriptor(field.getType()),
+                        verificationType(field.getType()));
+            } else if (instruction instanceof PutFieldInstruction putField) {
+                writePutField(putField);
+            } else if (instruction instanceof BinaryOpInstruction binaryOp) {
+                writeBinaryOp(binaryOp);
+            } else if (instruction instanceof UnaryOpInstruction unaryOp) {
+                writeUnaryOp(unaryOp);
+            } else if (instruction instanceof CondBranchInstruction condBranch) {
+                writeCondBranch(condBranch);
+            } else {
+                throw new RuntimeException("no instruction");
+            }
+        }
+
+        private void loadElement(Element element) {
+            if (element.isLiteral()) {
+                String literal = ((LiteralElement) element).getLiteral();
+                if (literal.startsWith("\"")) {
+                    code.pushString(literal.substring(1, literal.length() - 1));
+                } else {
+                    code.pushInt(Integer.parseInt(literal));
+                }
+                return;
+            }
+
+            Operand operand = (Operand) element;
+            if (operand.getType().getTypeOfElement() == ElementType.THIS || operand.getName().equals("this")) {
+                code.load(0, false);
+                return;
+            }
+
+            Descriptor descriptor = getDescriptor(operand);
+            if (operand instanceof ArrayOperand arrayOperand
+                    && operand.getType().getTypeOfElement() != ElementType.ARRAYREF
+                    && descriptor.getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
+                code.load(descriptor.getVirtualReg(), false);
+                loadElement(arrayOperand.getIndexOperands().get(0));
+                code.arrayLoad(isInt(operand.getType()));
+                return;
+            }
+
+            code.load(descriptor.getVirtualReg(), isInt(descriptor.getVarType()));
+        }
+
+        private Descriptor getDescriptor(Operand operand) {
+            Descriptor descriptor = varTable.get(operand.getName());
+            if (descriptor == null) {
+                throw new RuntimeException("Variable '" + operand.getName() + "' not found in method " + method.getMethodName());
+            }
+            return descriptor;
+        }
+
+        private void writeAssign(AssignInstruction assign) {
+            Operand dest = (Operand) assign.getDest();
+            Instruction rhs = assign.getRhs();
+            Descriptor descriptor = getDescriptor(dest);
+
+            if (!(dest instanceof ArrayOperand) && writeIinc(dest, rhs, descriptor)) return;
+
+            if (dest instanceof ArrayOperand arrayDest
+                    && descriptor.getVarType().getTypeOfElement() == ElementType.ARRAYREF
+                    && dest.getType().getTypeOfElement() != ElementType.ARRAYREF) {
+                code.load(descriptor.getVirtualReg(), false);
+                loadElement(arrayDest.getIndexOperands().get(0));
+                routeInstruction(rhs);
+                code.op(isInt(dest.getType()) ? CodeBuilder.IASTORE : CodeBuilder.AASTORE, 3, null);
+                return;
+            }
+
+            routeInstruction(rhs);
+            code.store(descriptor.getVirtualReg(), isInt(dest.getType()), verificationType(dest.getType()));
+        }
+
+        // a = a + c and a = a - c, with a small constant c
+        private boolean writeIinc(Operand dest, Instruction rhs, Descriptor descriptor) {
+            if (!(rhs instanceof BinaryOpInstruction binaryOp)) return false;
+
+            OperationType opType = binaryOp.getOperation().getOpType();
+            if (opType != OperationType.ADD && opType != OperationType.SUB) return false;
+
+            Element left = binaryOp.getLeftOperand();
+            Element right = binaryOp.getRightOperand();
+            LiteralElement literal;
+            Element operand;
+            if (left.isLiteral() && !right.isLiteral() && opType == OperationType.ADD) {
+                literal = (LiteralElement) left;
+                operand = right;
+            } else if (!left.isLiteral() && right.isLiteral()) {
+                literal = (LiteralElement) right;
+                operand = left;
+            } else {
+                return false;
+            }
+
+            if (operand instanceof ArrayOperand || !((Operand) operand).getName().equals(dest.getName())) return false;
+
+            int value = Integer.parseInt(literal.getLiteral());
+            if (opType == OperationType.SUB) value = -value;
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) return false;
+
+            code.iinc(descriptor.getVirtualReg(), value);
+            return true;
+        }
+
+        private void writeReturn(ReturnInstruction ret) {
+            if (!ret.hasReturnValue()) {
+                code.returnInsn(CodeBuilder.RETURN);
+                return;
+            }
+            loadElement(ret.getOperand());
+            code.returnInsn(isInt(ret.getOperand().getType()) ? CodeBuilder.IRETURN : CodeBuilder.ARETURN);
+        }
+
+        private void writePutField(PutFieldInstruction putField) {
+            Element object = putField.getFirstOperand();
+            Element field = putField.getSecondOperand();
+            String owner = object.getType() instanceof ClassType classType && object.getType().getTypeOfElement() != ElementType.THIS
+                    ? className(classType.getName()) : thisClass;
+
+            loadElement(object);
+            loadElement(putField.getThirdOperand());
+            code.field(CodeBuilder.PUTFIELD, owner, ((Operand) field).getName(), descriptor(field.getType()), null);
+        }
+
+        private void writeCall(CallInstruction call) {
+            switch (call.getInvocationType()) {
+                case invokestatic, invokevirtual, invokespecial -> writeInvoke(call);
+                case NEW -> {
+                    for (Element element : call.getListOfOperands()) {
+                        loadElement(element);
+                    }
+                    if (call.getReturnType().getTypeOfElement() == ElementType.ARRAYREF) {
+                        code.newArray(descriptor(call.getReturnType()));
+                    } else {
+                        code.newObject(className(((Operand) call.getFirstArg()).getName()));
+                    }
+                }
+                case arraylength -> {
+                    loadElement(call.getFirstArg());
+                    code.op(CodeBuilder.ARRAYLENGTH, 1, VerificationType.INTEGER);
+                }
+                case ldc -> loadElement(call.getFirstArg());
+                default -> throw new RuntimeException("Unsupported call " + call.getInvocationType());
+            }
+        }
+
+        private void writeInvoke(CallInstruction call) {
+            CallType callType = call.getInvocationType();
+            Element target = call.getFirstArg();
+
+            String owner;
+            String name;
+            if (callType == CallType.invokestatic) {
+                String targetName = ((Operand) target).getName();
+                owner = targetName.equals("this") ? thisClass : className(targetName);
+            } else {
+                loadElement(target);
+                owner = target.getType().getTypeOfElement() == ElementType.THIS
+                        ? thisClass : className(((ClassType) target.getType()).getName());
+            }
+
+            if (callType == CallType.invokespecial) {
+                name = "<init>";
+                // In the constructor, "this" refers to the super class constructor
+                if (target.getType().getTypeOfElement() == ElementType.THIS) owner = superClass;
+            } else {
+                name = ((LiteralElement) call.getSecondArg()).getLiteral().replace("\"", "");
+            }
+
+            StringBuilder methodDescriptor = new StringBuilder("(");
+            for (Element argument : call.getListOfOperands()) {
+                loadElement(argument);
+                methodDescriptor.append(descriptor(argument.getType()));
+            }
+            methodDescriptor.append(')').append(descriptor(call.getReturnType()));
+
+            int opcode = switch (callType) {
+                case invokestatic -> CodeBuilder.INVOKESTATIC;
+                case invokespecial -> CodeBuilder.INVOKESPECIAL;
+                default -> CodeBuilder.INVOKEVIRTUAL;
+            };
+            code.invoke(opcode, owner, name, methodDescriptor.toString(), call.getListOfOperands().size(),
+                    verificationType(call.getReturnType()));
+        }
+
+        private void writeBinaryOp(BinaryOpInstruction binaryOp) {
+            OperationType opType = binaryOp.getOperation().getOpType();
+            Element left = binaryOp.getLeftOperand();
+            Element right = binaryOp.getRightOperand();
+
+            switch (opType) {
+                case LTH, LTE, GTH, GTE, EQ, NEQ -> {
+                    boolean rightIsZero = right.isLiteral() && ((LiteralElement) right).getLiteral().equals("0");
+                    loadElement(left);
+                    if (rightIsZero) {
+                        writeBoolean(compareToZero(opType));
+                    } else {
+                        loadElement(right);
+                        writeBoolean(compare(opType));
+                    }
+                }
+                case ADD, SUB, MUL, DIV, AND, ANDB, OR, ORB -> {
+                    loadElement(left);
+                    loadElement(right);
+                    int opcode = switch (opType) {
+                        case ADD -> CodeBuilder.IADD;
+                        case SUB -> CodeBuilder.ISUB;
+                        case MUL -> CodeBuilder.IMUL;
+                        case DIV -> CodeBuilder.IDIV;
+                        case AND, ANDB -> CodeBuilder.IAND;
+                        default -> CodeBuilder.IOR;
+                    };
+                    code.op(opcode, 2, VerificationType.INTEGER);
+                }
+                default -> throw new RuntimeException("Unsupported binary operation " + opType);
+            }
+        }
+
+        // Turns the result of a conditional jump into 0 or 1
+        private void writeBoolean(int jumpOpcode) {
+            Label then = code.newLabel();
+            Label end = code.newLabel();
+            code.jump(jumpOpcode, then);
+            code.pushInt(0);
+            code.jump(CodeBuilder.GOTO, end);
+            code.placeLabel(then);
+            code.pushInt(1);
+            code.placeLabel(end);
+        }
+
+        private void writeUnaryOp(UnaryOpInstruction unaryOp) {
+            OperationType opType = unaryOp.getOperation().getOpType();
+            if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+                throw new RuntimeException("Unsupported unary operation " + opType);
+            }
+            loadElement(unaryOp.getOperand());
+            code.pushInt(1);
+            code.op(CodeBuilder.IXOR, 2, VerificationType.INTEGER);
+        }
+
+        private void writeCondBranch(CondBranchInstruction condBranch) {
+            Label target = label(condBranch.getLabel());
+
+            if (condBranch instanceof SingleOpCondInstruction singleOp) {
+                loadElement(singleOp.getOperands().get(0));
+                code.jump(CodeBuilder.IFNE, target);
+                return;
+            }
+
+            OpInstruction condition = ((OpCondInstruction) condBranch).getCondition();
+            List<Element> operands = condition.getOperands();
+            OperationType opType = condition.getOperation().getOpType();
+            switch (opType) {
+                case NOTB, NOT -> {
+                    loadElement(operands.get(0));
+                    code.jump(CodeBuilder.IFEQ, target);
+                }
+                case LTH, LTE, GTH, GTE, EQ, NEQ -> {
+                    loadElement(operands.get(0));
+                    loadElement(operands.get(1));
+                    code.jump(compare(opType), target);
+                }
+                case ORB, OR -> {
+                    loadElement(operands.get(0));
+                    code.jump(CodeBuilder.IFNE, target);
+                    loadElement(operands.get(1));
+                    code.jump(CodeBuilder.IFNE, target);
+                }
+                case ANDB, AND -> {
+                    Label skip = code.newLabel();
+                    loadElement(operands.get(0));
+                    code.jump(CodeBuilder.IFEQ, skip);
+                    loadElement(operands.get(1));
+                    code.jump(CodeBuilder.IFNE, target);
+                    code.placeLabel(skip);
+                }
+                default -> throw new RuntimeException("Unsupported condition " + opType);
+            }
+        }
+
+        private int compare(OperationType opType) {
+            return switch (opType) {
+                case LTH -> CodeBuilder.IF_ICMPLT;
+                case LTE -> CodeBuilder.IF_ICMPLE;
+                case GTH -> CodeBuilder.IF_ICMPGT;
+                case GTE -> CodeBuilder.IF_ICMPGE;
+                case EQ -> CodeBuilder.IF_ICMPEQ;
+                default -> CodeBuilder.IF_ICMPNE;
+            };
+        }
+
+        private int compareToZero(OperationType opType) {
+            return switch (opType) {
+                case LTH -> CodeBuilder.IFLT;
+                case LTE -> CodeBuilder.IFLE;
+                case GTH -> CodeBuilder.IFGT;
+                case GTE -> CodeBuilder.IFGE;
+                case EQ -> CodeBuilder.IFEQ;
+                default -> CodeBuilder.IFNE;
+            };
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package pt.up.fe.comp2023.jasmin.classfile;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+// Result of the class file backend. There is no Jasmin code, compiling just writes the bytes.
+public class ClassFileResult extends JasminResult {
+    private final byte[] bytes;
+
+    public ClassFileResult(OllirResult ollirResult, byte[] bytes) {
+        super(ollirResult, null, Collections.emptyList());
+        this.bytes = bytes;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public File compile(File outputDir) {
+        SpecsIo.mkdir(outputDir);
+        File classFile = new File(outputDir, getClassName() + ".class");
+        try (FileOutputStream out = new FileOutputStream(classFile)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return classFile;
+    }
+}
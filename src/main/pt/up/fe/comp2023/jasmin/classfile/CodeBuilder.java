@@ -0,0 +1,524 @@
+package pt.up.fe.comp2023.jasmin.classfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Bytecode of a single method. Besides the bytes, every instruction keeps its effect on the frame,
+// which is used to compute max stack and the StackMapTable once the method is complete.
+public class CodeBuilder {
+    public static final int NOP = 0x00;
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int ILOAD_0 = 0x1a;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int IALOAD = 0x2e;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int ISTORE_0 = 0x3b;
+    public static final int ASTORE_0 = 0x4b;
+    public static final int IASTORE = 0x4f;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEW = 0xbb;
+    public static final int NEWARRAY = 0xbc;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int ARRAYLENGTH = 0xbe;
+    public static final int ATHROW = 0xbf;
+    public static final int WIDE = 0xc4;
+
+    private static final int T_INT = 10;
+
+    public static class Label {
+        private int offset = -1;
+    }
+
+    private enum Kind { BASIC, LOAD, STORE, ARRAY_LOAD, INIT, BRANCH, GOTO, RETURN }
+
+    private static class Insn {
+        final int offset;
+        final Kind kind;
+        final int pops;
+        final VerificationType push;
+        final int local;
+        final VerificationType localType;
+        final Label target;
+
+        Insn(int offset, Kind kind, int pops, VerificationType push, int local, VerificationType localType, Label target) {
+            this.offset = offset;
+            this.kind = kind;
+            this.pops = pops;
+            this.push = push;
+            this.local = local;
+            this.localType = localType;
+            this.target = target;
+        }
+    }
+
+    private final ConstantPool pool;
+    private final String thisClass;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final List<Insn> insns = new ArrayList<>();
+    private int maxLocals = 0;
+
+    private byte[] code;
+    private int maxStack;
+    private byte[] stackMapTable;
+
+    public CodeBuilder(ConstantPool pool, String thisClass) {
+        this.pool = pool;
+        this.thisClass = thisClass;
+    }
+
+    public Label newLabel() {
+        return new Label();
+    }
+
+    public void placeLabel(Label label) {
+        label.offset = bytes.size();
+    }
+
+    public void reserveLocals(int count) {
+        maxLocals = Math.max(maxLocals, count);
+    }
+
+    public void pushInt(int value) {
+        int offset = bytes.size();
+        if (value >= -1 && value <= 5) {
+            write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            write(BIPUSH);
+            write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            write(SIPUSH);
+            writeShort(value);
+        } else {
+            writeLdc(pool.integer(value));
+        }
+        insns.add(new Insn(offset, Kind.BASIC, 0, VerificationType.INTEGER, -1, null, null));
+    }
+
+    public void pushString(String value) {
+        int offset = bytes.size();
+        writeLdc(pool.string(value));
+        insns.add(new Insn(offset, Kind.BASIC, 0, VerificationType.object("java/lang/String"), -1, null, null));
+    }
+
+    private void writeLdc(int index) {
+        if (index <= 0xFF) {
+            write(LDC);
+            write(index);
+        } else {
+            write(LDC_W);
+            writeShort(index);
+        }
+    }
+
+    public void load(int reg, boolean isInt) {
+        int offset = bytes.size();
+        writeLocalInsn(isInt ? ILOAD : ALOAD, isInt ? ILOAD_0 : ALOAD_0, reg);
+        insns.add(new Insn(offset, Kind.LOAD, 0, null, reg, null, null));
+    }
+
+    // The declared type is what the local holds afterwards, so that every variable sharing a register
+    // keeps a single type at merge points
+    public void store(int reg, boolean isInt, VerificationType declared) {
+        int offset = bytes.size();
+        writeLocalInsn(isInt ? ISTORE : ASTORE, isInt ? ISTORE_0 : ASTORE_0, reg);
+        insns.add(new Insn(offset, Kind.STORE, 1, null, reg, declared, null));
+    }
+
+    private void writeLocalInsn(int opcode, int shortOpcode, int reg) {
+        reserveLocals(reg + 1);
+        if (reg <= 3) {
+            write(shortOpcode + reg);
+        } else if (reg <= 0xFF) {
+            write(opcode);
+            write(reg);
+        } else {
+            write(WIDE);
+            write(opcode);
+            writeShort(reg);
+        }
+    }
+
+    public void iinc(int reg, int value) {
+        int offset = bytes.size();
+        reserveLocals(reg + 1);
+        if (reg <= 0xFF && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            write(IINC);
+            write(reg);
+            write(value);
+        } else {
+            write(WIDE);
+            write(IINC);
+            writeShort(reg);
+            writeShort(value);
+        }
+        insns.add(new Insn(offset, Kind.BASIC, 0, null, -1, null, null));
+    }
+
+    // Instructions without operands, e.g. iadd, iastore or arraylength
+    public void op(int opcode, int pops, VerificationType push) {
+        int offset = bytes.size();
+        write(opcode);
+        insns.add(new Insn(offset, Kind.BASIC, pops, push, -1, null, null));
+    }
+
+    public void arrayLoad(boolean isInt) {
+        int offset = bytes.size();
+        write(isInt ? IALOAD : AALOAD);
+        insns.add(new Insn(offset, Kind.ARRAY_LOAD, 2, null, -1, null, null));
+    }
+
+    public void jump(int opcode, Label target) {
+        int offset = bytes.size();
+        write(opcode);
+        writeShort(0);
+        if (opcode == GOTO) {
+            insns.add(new Insn(offset, Kind.GOTO, 0, null, -1, null, target));
+        } else {
+            int pops = opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE ? 2 : 1;
+            insns.add(new Insn(offset, Kind.BRANCH, pops, null, -1, null, target));
+        }
+    }
+
+    public void returnInsn(int opcode) {
+        int offset = bytes.size();
+        write(opcode);
+        insns.add(new Insn(offset, Kind.RETURN, opcode == RETURN ? 0 : 1, null, -1, null, null));
+    }
+
+    public void newObject(String internalName) {
+        int offset = bytes.size();
+        write(NEW);
+        writeShort(pool.classRef(internalName));
+        insns.add(new Insn(offset, Kind.BASIC, 0, VerificationType.uninitialized(offset), -1, null, null));
+    }
+
+    public void newArray(String descriptor) {
+        int offset = bytes.size();
+        String element = descriptor.substring(1);
+        if (element.equals("I")) {
+            write(NEWARRAY);
+            write(T_INT);
+        } else {
+            write(ANEWARRAY);
+            writeShort(pool.classRef(element.startsWith("L") ? element.substring(1, element.length() - 1) : element));
+        }
+        insns.add(new Insn(offset, Kind.BASIC, 1, VerificationType.object(descriptor), -1, null, null));
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor, VerificationType type) {
+        int offset = bytes.size();
+        write(opcode);
+        writeShort(pool.fieldRef(owner, name, descriptor));
+        if (opcode == GETFIELD) {
+            insns.add(new Insn(offset, Kind.BASIC, 1, type, -1, null, null));
+        } else {
+            insns.add(new Insn(offset, Kind.BASIC, 2, null, -1, null, null));
+        }
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor, int argCount, VerificationType result) {
+        int offset = bytes.size();
+        write(opcode);
+        writeShort(pool.methodRef(owner, name, descriptor));
+        int pops = argCount + (opcode == INVOKESTATIC ? 0 : 1);
+        if (opcode == INVOKESPECIAL && name.equals("<init>")) {
+            insns.add(new Insn(offset, Kind.INIT, pops, result, -1, VerificationType.object(owner), null));
+        } else {
+            insns.add(new Insn(offset, Kind.BASIC, pops, result, -1, null, null));
+        }
+    }
+
+    private void write(int b) {
+        bytes.write(b);
+    }
+
+    private void writeShort(int s) {
+        bytes.write(s >> 8);
+        bytes.write(s);
+    }
+
+    public byte[] getCode() {
+        return code;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getInstructionCount() {
+        return insns.size();
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    // Null when the method needs no frames
+    public byte[] getStackMapTable() {
+        return stackMapTable;
+    }
+
+    public void finish(VerificationType[] initialLocals) {
+        code = bytes.toByteArray();
+        reserveLocals(initialLocals.length);
+        if (code.length > 0xFFFF) {
+            throw new RuntimeException("Method code is too large");
+        }
+
+        Map<Integer, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < insns.size(); i++) {
+            indexOf.put(insns.get(i).offset, i);
+        }
+        int[] targets = new int[insns.size()];
+        Arrays.fill(targets, -1);
+        for (int i = 0; i < insns.size(); i++) {
+            Insn insn = insns.get(i);
+            if (insn.target == null) continue;
+
+            Integer target = indexOf.get(insn.target.offset);
+            if (target == null) {
+                throw new RuntimeException("Jump to a label without an instruction");
+            }
+            int delta = insn.target.offset - insn.offset;
+            if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+                throw new RuntimeException("Jump offset too large");
+            }
+            code[insn.offset + 1] = (byte) (delta >> 8);
+            code[insn.offset + 2] = (byte) delta;
+            targets[i] = target;
+        }
+
+        Frame[] in = computeFrames(initialLocals, targets);
+        writeStackMapTable(in, targets);
+    }
+
+    private Frame[] computeFrames(VerificationType[] initialLocals, int[] targets) {
+        Frame[] in = new Frame[insns.size()];
+        if (insns.isEmpty()) return in;
+
+        VerificationType[] locals = new VerificationType[maxLocals];
+        Arrays.fill(locals, VerificationType.TOP);
+        System.arraycopy(initialLocals, 0, locals, 0, initialLocals.length);
+        in[0] = new Frame(locals, new ArrayList<>());
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.push(0);
+        maxStack = 0;
+        while (!worklist.isEmpty()) {
+            int i = worklist.pop();
+            Insn insn = insns.get(i);
+            Frame out = execute(insn, in[i]);
+            maxStack = Math.max(maxStack, Math.max(in[i].stack.size(), out.stack.size()));
+
+            List<Integer> successors = new ArrayList<>();
+            if (insn.kind != Kind.GOTO && insn.kind != Kind.RETURN) {
+                if (i + 1 >= insns.size()) {
+                    throw new RuntimeException("Execution falls off the end of the code");
+                }
+                successors.add(i + 1);
+            }
+            if (targets[i] != -1) successors.add(targets[i]);
+
+            for (int successor : successors) {
+                if (in[successor] == null) {
+                    in[successor] = out;
+                    worklist.push(successor);
+                } else {
+                    Frame merged = in[successor].merge(out, insns.get(successor).offset);
+                    if (!merged.equals(in[successor])) {
+                        in[successor] = merged;
+                        worklist.push(successor);
+                    }
+                }
+            }
+        }
+        return in;
+    }
+
+    private Frame execute(Insn insn, Frame in) {
+        Frame out = in.copy();
+        switch (insn.kind) {
+            case LOAD -> out.push(out.locals[insn.local]);
+            case STORE -> {
+                VerificationType value = out.pop(insn.offset);
+                out.locals[insn.local] = value.isUninitialized() || insn.localType == null ? value : insn.localType;
+            }
+            case ARRAY_LOAD -> {
+                out.pop(insn.offset);
+                out.push(out.pop(insn.offset).elementType());
+            }
+            case INIT -> {
+                for (int i = 1; i < insn.pops; i++) out.pop(insn.offset);
+                VerificationType receiver = out.pop(insn.offset);
+                VerificationType initialized = receiver.equals(VerificationType.UNINITIALIZED_THIS)
+                        ? VerificationType.object(thisClass) : insn.localType;
+                out.replace(receiver, initialized);
+                if (insn.push != null) out.push(insn.push);
+            }
+            default -> {
+                for (int i = 0; i < insn.pops; i++) out.pop(insn.offset);
+                if (insn.push != null) out.push(insn.push);
+            }
+        }
+        return out;
+    }
+
+    private void writeStackMapTable(Frame[] in, int[] targets) {
+        TreeMap<Integer, Frame> frames = new TreeMap<>();
+        for (int i = 0; i < insns.size(); i++) {
+            if (targets[i] != -1 && in[targets[i]] != null) {
+                frames.put(insns.get(targets[i]).offset, in[targets[i]]);
+            }
+        }
+
+        // Unreachable code is still verified, so it is replaced by nop ... athrow with a frame that always holds
+        Frame deadFrame = new Frame(new VerificationType[0], new ArrayList<>(List.of(VerificationType.object("java/lang/Throwable"))));
+        for (int i = 0; i < insns.size(); i++) {
+            if (in[i] != null) continue;
+
+            int start = insns.get(i).offset;
+            while (i + 1 < insns.size() && in[i + 1] == null) i++;
+            int end = i + 1 < insns.size() ? insns.get(i + 1).offset : code.length;
+            Arrays.fill(code, start, end - 1, (byte) NOP);
+            code[end - 1] = (byte) ATHROW;
+            frames.put(start, deadFrame);
+            maxStack = Math.max(maxStack, 1);
+        }
+
+        if (frames.isEmpty()) {
+            stackMapTable = null;
+            return;
+        }
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(table);
+        try {
+            out.writeShort(frames.size());
+            int previous = -1;
+            for (var entry : frames.entrySet()) {
+                int offset = entry.getKey();
+                Frame frame = entry.getValue();
+
+                // Always a full_frame, compression of frames is not worth it for methods this small
+                out.writeByte(255);
+                out.writeShort(previous == -1 ? offset : offset - previous - 1);
+                int numLocals = frame.locals.length;
+                while (numLocals > 0 && frame.locals[numLocals - 1].equals(VerificationType.TOP)) numLocals--;
+                out.writeShort(numLocals);
+                for (int i = 0; i < numLocals; i++) frame.locals[i].write(out, pool);
+                out.writeShort(frame.stack.size());
+                for (VerificationType type : frame.stack) type.write(out, pool);
+                previous = offset;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        stackMapTable = table.toByteArray();
+    }
+
+    private static class Frame {
+        final VerificationType[] locals;
+        final List<VerificationType> stack;
+
+        Frame(VerificationType[] locals, List<VerificationType> stack) {
+            this.locals = locals;
+            this.stack = stack;
+        }
+
+        Frame copy() {
+            return new Frame(locals.clone(), new ArrayList<>(stack));
+        }
+
+        void push(VerificationType type) {
+            stack.add(type);
+        }
+
+        VerificationType pop(int offset) {
+            if (stack.isEmpty()) {
+                throw new RuntimeException("Stack underflow at offset " + offset);
+            }
+            return stack.remove(stack.size() - 1);
+        }
+
+        void replace(VerificationType from, VerificationType to) {
+            for (int i = 0; i < locals.length; i++) {
+                if (locals[i].equals(from)) locals[i] = to;
+            }
+            stack.replaceAll(type -> type.equals(from) ? to : type);
+        }
+
+        Frame merge(Frame other, int offset) {
+            if (stack.size() != other.stack.size()) {
+                throw new RuntimeException("Inconsistent stack height at offset " + offset);
+            }
+            VerificationType[] mergedLocals = new VerificationType[locals.length];
+            for (int i = 0; i < locals.length; i++) {
+                mergedLocals[i] = VerificationType.merge(locals[i], other.locals[i]);
+            }
+            List<VerificationType> mergedStack = new ArrayList<>();
+            for (int i = 0; i < stack.size(); i++) {
+                mergedStack.add(VerificationType.merge(stack.get(i), other.stack.get(i)));
+            }
+            return new Frame(mergedLocals, mergedStack);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Frame other)) return false;
+            return Arrays.equals(locals, other.locals) && stack.equals(other.stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(locals) * 31 + stack.hashCode();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package pt.up.fe.comp2023.jasmin.classfile;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+// Types of locals and stack slots, as they appear in StackMapTable frames
+public class VerificationType {
+    private static final int TOP_TAG = 0;
+    private static final int INTEGER_TAG = 1;
+    private static final int UNINITIALIZED_THIS_TAG = 6;
+    private static final int OBJECT_TAG = 7;
+    private static final int UNINITIALIZED_TAG = 8;
+
+    public static final VerificationType TOP = new VerificationType(TOP_TAG, null, -1);
+    public static final VerificationType INTEGER = new VerificationType(INTEGER_TAG, null, -1);
+    public static final VerificationType UNINITIALIZED_THIS = new VerificationType(UNINITIALIZED_THIS_TAG, null, -1);
+
+    private final int tag;
+    private final String className;
+    private final int offset;
+
+    private VerificationType(int tag, String className, int offset) {
+        this.tag = tag;
+        this.className = className;
+        this.offset = offset;
+    }
+
+    public static VerificationType object(String internalName) {
+        return new VerificationType(OBJECT_TAG, internalName, -1);
+    }
+
+    // Result of the "new" instruction at the given offset, until its constructor is called
+    public static VerificationType uninitialized(int offset) {
+        return new VerificationType(UNINITIALIZED_TAG, null, offset);
+    }
+
+    public boolean isUninitialized() {
+        return tag == UNINITIALIZED_TAG || tag == UNINITIALIZED_THIS_TAG;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    // Type of the elements of an array type, e.g. [I gives int
+    public VerificationType elementType() {
+        if (tag != OBJECT_TAG || !className.startsWith("[")) return TOP;
+
+        String element = className.substring(1);
+        return switch (element.charAt(0)) {
+            case 'I', 'Z', 'B', 'C', 'S' -> INTEGER;
+            case 'L' -> object(element.substring(1, element.length() - 1));
+            case '[' -> object(element);
+            default -> TOP;
+        };
+    }
+
+    public static VerificationType merge(VerificationType a, VerificationType b) {
+        return a.equals(b) ? a : TOP;
+    }
+
+    public void write(DataOutputStream out, ConstantPool pool) throws IOException {
+        out.writeByte(tag);
+        if (tag == OBJECT_TAG) {
+            out.writeShort(pool.classRef(className));
+        } else if (tag == UNINITIALIZED_TAG) {
+            out.writeShort(offset);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VerificationType other)) return false;
+        return tag == other.tag && offset == other.offset && Objects.equals(className, other.className);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tag, className, offset);
+    }
+
+    @Override
+    public String toString() {
+        return switch (tag) {
+            case TOP_TAG -> "top";
+            case INTEGER_TAG -> "int";
+            case UNINITIALIZED_THIS_TAG -> "uninitializedThis";
+            case UNINITIALIZED_TAG -> "uninitialized(" + offset + ")";
+            default -> className;
+        };
+    }
+}
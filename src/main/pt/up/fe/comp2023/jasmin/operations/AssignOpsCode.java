@@ -1,14 +1,14 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class AssignOpsCode extends InstructionClass{
     public String MethodName;
-    public AssignOpsCode(AssignInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, String MethodName, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public AssignOpsCode(AssignInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, String MethodName, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
         this.MethodName = MethodName;
     }
 
@@ -51,7 +51,7 @@ public class AssignOpsCode extends InstructionClass{
             }
         }
 
-        String rhsCode = jasmin.routeInstruction(rhs,VarTable,MethodName);
+        String rhsCode = context.routeInstruction(rhs,VarTable,MethodName);
 
 
         if (descriptor.getVarType().getTypeOfElement() == ElementType.ARRAYREF
@@ -64,9 +64,9 @@ public class AssignOpsCode extends InstructionClass{
                     .append((o.getType().getTypeOfElement() == ElementType.INT32 ||
                             o.getType().getTypeOfElement() == ElementType.BOOLEAN) ? "\tiastore\n" : "\taastore\n");
 
-            super.jasmin.lowerStackSize();
-            super.jasmin.lowerStackSize();
-            super.jasmin.lowerStackSize();
+            super.context.lowerStackSize();
+            super.context.lowerStackSize();
+            super.context.lowerStackSize();
 
             return jasminCode.toString();
         }
@@ -83,7 +83,7 @@ public class AssignOpsCode extends InstructionClass{
         int reg = VarTable.get(op.getName()).getVirtualReg();
         jasminCode.append((reg <= 3) ? "_" : " ").append(reg).append("\n");
 
-        super.jasmin.lowerStackSize();
+        super.context.lowerStackSize();
 
         return jasminCode.toString();
     }
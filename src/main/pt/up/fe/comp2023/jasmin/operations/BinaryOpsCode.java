@@ -1,13 +1,13 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class BinaryOpsCode extends InstructionClass{
-    public BinaryOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public BinaryOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
     }
 
     @Override
@@ -25,7 +25,7 @@ public class BinaryOpsCode extends InstructionClass{
                 jasminCode.append(loadElement(instruction.getLeftOperand())).append("\t")
                         .append(getLabelComp(op))
                         .append(getCompFormula());
-                super.jasmin.lowerStackSize();
+                super.context.lowerStackSize();
                 return jasminCode.toString();
             }
         }
@@ -40,7 +40,7 @@ public class BinaryOpsCode extends InstructionClass{
                 jasminCode.append("\tisub\n\t")
                         .append(getLabelComp(op))
                         .append(getCompFormula());
-                super.jasmin.lowerStackSize();
+                super.context.lowerStackSize();
             }
             case AND,ANDB -> {
                 jasminCode.append("\tiand\n");
@@ -49,7 +49,7 @@ public class BinaryOpsCode extends InstructionClass{
                 return "";
             }
         }
-        super.jasmin.lowerStackSize();
+        super.context.lowerStackSize();
 
         return jasminCode.toString();
     }
@@ -1,14 +1,14 @@
 package pt.up.fe.comp2023.jasmin.operations.CallOps;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class InvokeStaticOps extends InvokeAbstract{
     public InvokeStaticOps(CallInstruction instruction, HashMap<String, Descriptor> VarTable,
-                           int LabelCounter, String ThisClassName, HashMap<String, String> importsMap, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, ThisClassName, importsMap, jasmin);
+                           int LabelCounter, String ThisClassName, HashMap<String, String> importsMap, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, ThisClassName, importsMap, context);
     }
 
     @Override
@@ -34,9 +34,9 @@ public class InvokeStaticOps extends InvokeAbstract{
                 .append("(");
 
         for (Element e : instruction.getListOfOperands())
-            jasminCode.append(jasmin.getParseType(e.getType()));
+            jasminCode.append(context.getParseType(e.getType()));
 
-        jasminCode.append(")").append(jasmin.getParseType(instruction.getReturnType())).append("\n");
+        jasminCode.append(")").append(context.getParseType(instruction.getReturnType())).append("\n");
 
         return jasminCode.toString();
     }
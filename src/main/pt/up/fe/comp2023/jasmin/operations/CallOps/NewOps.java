@@ -1,14 +1,14 @@
 package pt.up.fe.comp2023.jasmin.operations.CallOps;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class NewOps extends InvokeAbstract{
     public NewOps(CallInstruction instruction, HashMap<String, Descriptor> VarTable,
-                  int LabelCounter, String ThisClassName, HashMap<String, String> importsMap, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, ThisClassName, importsMap, jasmin);
+                  int LabelCounter, String ThisClassName, HashMap<String, String> importsMap, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, ThisClassName, importsMap, context);
     }
 
     @Override
@@ -24,7 +24,7 @@ public class NewOps extends InvokeAbstract{
             }
             jasminCode.append("\tnew ").append(this.importsMap.getOrDefault
                     (((Operand) instruction.getFirstArg()).getName(),((Operand) instruction.getFirstArg()).getName())).append("\n");
-            super.jasmin.growStackSize(1);
+            super.context.growStackSize(1);
             return jasminCode.toString();
 
         } else if (elementType == ElementType.ARRAYREF) {
@@ -37,9 +37,9 @@ public class NewOps extends InvokeAbstract{
             }
         }
         jasminCode.append("\tdup\n");
-        super.jasmin.growStackSize(1);
+        super.context.growStackSize(1);
         for (int a = 0; a< instruction.getListOfOperands().size()-1 ; a++) {
-            super.jasmin.lowerStackSize();
+            super.context.lowerStackSize();
         }
         return jasminCode.toString();
     }
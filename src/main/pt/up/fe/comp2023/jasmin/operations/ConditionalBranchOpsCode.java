@@ -1,13 +1,13 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class ConditionalBranchOpsCode extends InstructionClass{
-    public ConditionalBranchOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public ConditionalBranchOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
     }
 
     @Override
@@ -34,17 +34,17 @@ public class ConditionalBranchOpsCode extends InstructionClass{
                     jasminCode.append(loadElement(leftOperand)).append(loadElement(rightOperand)).append("\tisub\n")
                             .append('\t').append(getLabelComp(opInstruction.getOperation())).append(' ')
                             .append(((CondBranchInstruction) instruction).getLabel()).append('\n');
-                    super.jasmin.lowerStackSize();
+                    super.context.lowerStackSize();
                 }
                 case EQ -> {
                     jasminCode.append(loadElement(leftOperand)).append(loadElement(rightOperand)).append("\tisub\n")
                         .append("\tifeq ").append(((CondBranchInstruction) instruction).getLabel()).append('\n');
-                    super.jasmin.lowerStackSize();
+                    super.context.lowerStackSize();
                 }
                 case NEQ -> {
                     jasminCode.append(loadElement(leftOperand)).append(loadElement(rightOperand)).append("\tisub\n")
                             .append("\tifne ").append(((CondBranchInstruction) instruction).getLabel()).append('\n');
-                    super.jasmin.lowerStackSize();
+                    super.context.lowerStackSize();
                 }
                 case ORB -> jasminCode.append(loadElement(leftOperand))
                         .append("\tifne ").append(((CondBranchInstruction) instruction).getLabel()).append('\n')
@@ -64,7 +64,7 @@ public class ConditionalBranchOpsCode extends InstructionClass{
             jasminCode.append(loadElement(singleOp.getOperands().get(0)))
                     .append("\tifne ").append(((CondBranchInstruction) instruction).getLabel()).append("\n");
         }
-        super.jasmin.lowerStackSize();
+        super.context.lowerStackSize();
 
         return jasminCode.toString();
     }
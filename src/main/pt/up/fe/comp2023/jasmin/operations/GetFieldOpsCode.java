@@ -4,7 +4,7 @@ import org.specs.comp.ollir.Descriptor;
 import org.specs.comp.ollir.GetFieldInstruction;
 import org.specs.comp.ollir.Instruction;
 import org.specs.comp.ollir.Operand;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
@@ -14,8 +14,8 @@ public class GetFieldOpsCode extends InstructionClass{
     HashMap<String, String> importsMap;
 
     public GetFieldOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter,
-                           Jasmin jasmin, String ThisClassName, HashMap<String, String> importsMap) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+                           MethodContext context, String ThisClassName, HashMap<String, String> importsMap) {
+        super(instruction, VarTable, LabelCounter, context);
         this.ThisClassName = ThisClassName;
         this.importsMap = importsMap;
     }
@@ -26,6 +26,6 @@ public class GetFieldOpsCode extends InstructionClass{
         return super.loadElement(instruction.getFirstOperand()) +
                 "\tgetfield " + this.importsMap.getOrDefault(ThisClassName,ThisClassName) +
                 "/" + ((Operand) instruction.getSecondOperand()).getName() +
-                " " + jasmin.getParseType(instruction.getSecondOperand().getType()) + "\n";
+                " " + context.getParseType(instruction.getSecondOperand().getType()) + "\n";
     }
 }
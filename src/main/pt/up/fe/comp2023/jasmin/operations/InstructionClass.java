@@ -1,19 +1,19 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 import java.util.HashMap;
 
 abstract public class InstructionClass {
     public Instruction instruction;
     public HashMap<String, Descriptor> VarTable;
     public int LabelCounter;
-    public Jasmin jasmin;
-    public InstructionClass(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
+    public MethodContext context;
+    public InstructionClass(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
         this.instruction = instruction;
         this.VarTable = VarTable;
         this.LabelCounter = LabelCounter;
-        this.jasmin = jasmin;
+        this.context = context;
     }
 
     public Instruction getInstruction() {
@@ -24,7 +24,7 @@ abstract public class InstructionClass {
         return LabelCounter;
     }
     public String getDescriptor(Descriptor descriptor) {
-        this.jasmin.growStackSize(1);
+        this.context.growStackSize(1);
         ElementType elementType = descriptor.getVarType().getTypeOfElement();
         if (elementType == ElementType.THIS)
             return "\taload_0\n";
@@ -46,7 +46,7 @@ abstract public class InstructionClass {
     }
 
     public String getLiteral(LiteralElement element) {
-        this.jasmin.growStackSize(1);
+        this.context.growStackSize(1);
         String jasminCode = "\t";
         int literal;
         String string = element.getLiteral();
@@ -87,14 +87,14 @@ abstract public class InstructionClass {
         if (e.getType().getTypeOfElement() != ElementType.ARRAYREF && d.getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
             ArrayOperand arrayOp = (ArrayOperand) e;
             Element i = arrayOp.getIndexOperands().get(0);
-            this.jasmin.growStackSize(1);
+            this.context.growStackSize(1);
             return this.getDescriptor(d) + loadElement(i) + "\tiaload\n";
         }
 
         return this.getDescriptor(d);
     }
     public String getLabelComp(Operation operation) {
-        this.jasmin.growStackSize(1);
+        this.context.growStackSize(1);
         return switch (operation.getOpType()) {
             case GTE -> "ifge";
             case GTH -> "ifgt";
@@ -4,7 +4,7 @@ import org.specs.comp.ollir.Descriptor;
 import org.specs.comp.ollir.Instruction;
 import org.specs.comp.ollir.Operand;
 import org.specs.comp.ollir.PutFieldInstruction;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
@@ -12,8 +12,8 @@ public class PutFieldOpsCode extends InstructionClass{
     String ThisClassName;
     HashMap<String, String>  importsMap;
     public PutFieldOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter,
-                           Jasmin jasmin, String ThisClassName,HashMap<String, String>  importsMap) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+                           MethodContext context, String ThisClassName,HashMap<String, String>  importsMap) {
+        super(instruction, VarTable, LabelCounter, context);
         this.ThisClassName = ThisClassName;
         this.importsMap = importsMap;
     }
@@ -27,9 +27,9 @@ public class PutFieldOpsCode extends InstructionClass{
                 ((((Operand) instruction.getFirstOperand()).getName().equals("this")) ?
                         this.importsMap.getOrDefault(ThisClassName,ThisClassName) : (((Operand) instruction.getFirstOperand()).getName())) +
                 "/" + ((Operand) instruction.getSecondOperand()).getName() +
-                " " + jasmin.getParseType(instruction.getSecondOperand().getType()) + "\n";
-        super.jasmin.lowerStackSize();
-        super.jasmin.lowerStackSize();
+                " " + context.getParseType(instruction.getSecondOperand().getType()) + "\n";
+        super.context.lowerStackSize();
+        super.context.lowerStackSize();
 
         return code;
     }
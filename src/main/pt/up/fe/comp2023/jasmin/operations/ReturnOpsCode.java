@@ -1,14 +1,14 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class ReturnOpsCode extends InstructionClass{
 
-    public ReturnOpsCode(ReturnInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public ReturnOpsCode(ReturnInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
     }
 
     @Override
@@ -28,7 +28,7 @@ public class ReturnOpsCode extends InstructionClass{
             jasminCode.append(super.loadElement(instruction.getOperand()))
                     .append("\tareturn\n");
         }
-        super.jasmin.lowerStackSize();
+        super.context.lowerStackSize();
         return jasminCode.toString();
     }
 }
@@ -1,13 +1,13 @@
 package pt.up.fe.comp2023.jasmin.operations;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class SingleOpsCode extends InstructionClass{
-    public SingleOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public SingleOpsCode(Instruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
     }
 
     @Override
@@ -3,13 +3,13 @@ package pt.up.fe.comp2023.jasmin.operations;
 import org.specs.comp.ollir.Descriptor;
 import org.specs.comp.ollir.OperationType;
 import org.specs.comp.ollir.UnaryOpInstruction;
-import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.MethodContext;
 
 import java.util.HashMap;
 
 public class UnaryOpsCode extends InstructionClass{
-    public UnaryOpsCode(UnaryOpInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, Jasmin jasmin) {
-        super(instruction, VarTable, LabelCounter, jasmin);
+    public UnaryOpsCode(UnaryOpInstruction instruction, HashMap<String, Descriptor> VarTable, int LabelCounter, MethodContext context) {
+        super(instruction, VarTable, LabelCounter, context);
     }
 
     @Override
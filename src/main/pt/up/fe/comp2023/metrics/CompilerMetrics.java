@@ -0,0 +1,150 @@
+package pt.up.fe.comp2023.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Wall time, allocated bytes and counters of each compiler phase.
+// Collection is per thread and only happens between start() and stop(), otherwise phases cost a
+// thread local lookup and counters are ignored.
+public class CompilerMetrics {
+    private static final ThreadLocal<CompilerMetrics> CURRENT = new ThreadLocal<>();
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+    private final Map<String, PhaseMetrics> phases = new LinkedHashMap<>();
+    private final Deque<PhaseMetrics> openPhases = new ArrayDeque<>();
+    private final long startNanos = System.nanoTime();
+
+    public static CompilerMetrics start() {
+        CompilerMetrics metrics = new CompilerMetrics();
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    public static boolean isEnabled() {
+        return CURRENT.get() != null;
+    }
+
+    // Metrics of the calling thread, null when collection is disabled
+    public static CompilerMetrics current() {
+        return CURRENT.get();
+    }
+
+    public static void set(CompilerMetrics metrics) {
+        if (metrics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(metrics);
+        }
+    }
+
+    // Adds the phases recorded separately by a task of a parallel phase. Their wall times add up, so
+    // they can be larger than the wall time of the enclosing phase.
+    public static void merge(CompilerMetrics task) {
+        CompilerMetrics metrics = CURRENT.get();
+        if (metrics == null || task == null) {
+            return;
+        }
+        for (PhaseMetrics phase : task.phases.values()) {
+            metrics.phases.computeIfAbsent(phase.getName(), PhaseMetrics::new).addAll(phase);
+        }
+    }
+
+    // The phase ends when it is closed, which callers do in a finally block
+    public static Phase phase(String name) {
+        CompilerMetrics metrics = CURRENT.get();
+        if (metrics == null) {
+            return Phase.DISABLED;
+        }
+        PhaseMetrics phase = metrics.phases.computeIfAbsent(name, PhaseMetrics::new);
+        metrics.openPhases.push(phase);
+        return new Phase(metrics, phase);
+    }
+
+    // Adds to a counter of the innermost open phase
+    public static void count(String counter, long delta) {
+        CompilerMetrics metrics = CURRENT.get();
+        if (metrics == null || metrics.openPhases.isEmpty()) {
+            return;
+        }
+        metrics.openPhases.peek().addToCounter(counter, delta);
+    }
+
+    public List<PhaseMetrics> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    public PhaseMetrics getPhase(String name) {
+        return phases.get(name);
+    }
+
+    public String toJson() {
+        JsonObject report = new JsonObject();
+        report.addProperty("totalWallTimeNanos", System.nanoTime() - startNanos);
+
+        JsonArray phaseArray = new JsonArray();
+        for (PhaseMetrics phase : phases.values()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("name", phase.getName());
+            json.addProperty("calls", phase.getCalls());
+            json.addProperty("wallTimeNanos", phase.getWallTimeNanos());
+            json.addProperty("allocatedBytes", phase.getAllocatedBytes());
+            JsonObject counters = new JsonObject();
+            phase.getCounters().forEach(counters::addProperty);
+            json.add("counters", counters);
+            phaseArray.add(json);
+        }
+        report.add("phases", phaseArray);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(report);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN != null ? THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    public static class Phase {
+        private static final Phase DISABLED = new Phase(null, null);
+
+        private final CompilerMetrics metrics;
+        private final PhaseMetrics phase;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Phase(CompilerMetrics metrics, PhaseMetrics phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.startBytes = metrics != null ? allocatedBytes() : 0;
+            this.startNanos = System.nanoTime();
+        }
+
+        public void close() {
+            if (metrics == null) return;
+
+            long wallTime = System.nanoTime() - startNanos;
+            long bytes = startBytes == -1 ? -1 : allocatedBytes() - startBytes;
+            phase.addRun(wallTime, bytes);
+            metrics.openPhases.remove(phase);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package pt.up.fe.comp2023.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Totals of every run of a phase with the same name
+public class PhaseMetrics {
+    private final String name;
+    private int calls;
+    private long wallTimeNanos;
+    private long allocatedBytes;
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    public PhaseMetrics(String name) {
+        this.name = name;
+    }
+
+    void addRun(long wallTimeNanos, long allocatedBytes) {
+        this.calls++;
+        this.wallTimeNanos += wallTimeNanos;
+        this.allocatedBytes = allocatedBytes < 0 || this.allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+    }
+
+    void addAll(PhaseMetrics other) {
+        this.calls += other.calls;
+        this.wallTimeNanos += other.wallTimeNanos;
+        this.allocatedBytes = other.allocatedBytes < 0 || this.allocatedBytes < 0 ? -1 : this.allocatedBytes + other.allocatedBytes;
+        other.counters.forEach(this::addToCounter);
+    }
+
+    void addToCounter(String counter, long delta) {
+        counters.merge(counter, delta, Long::sum);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    // -1 when the JVM can't measure allocations
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getCounter(String counter) {
+        return counters.getOrDefault(counter, 0L);
+    }
+
+    public Map<String, Long> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+}
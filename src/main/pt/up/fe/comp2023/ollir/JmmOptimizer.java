@@ -1,41 +1,78 @@
 package pt.up.fe.comp2023.ollir;
 
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp2023.analysis.SymbolTableCR;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 import pt.up.fe.comp2023.ollir.optimization.ConstantFolding;
-import pt.up.fe.comp2023.ollir.optimization.ConstantPropagation;
+import pt.up.fe.comp2023.ollir.optimization.ControlFlow;
+import pt.up.fe.comp2023.ollir.optimization.DeadBranchElimination;
+import pt.up.fe.comp2023.ollir.optimization.DeadCodeElimination;
+import pt.up.fe.comp2023.ollir.optimization.LocalValueNumbering;
 import pt.up.fe.comp2023.ollir.optimization.RegisterAllocation;
+import pt.up.fe.comp2023.ollir.optimization.SparseConditionalConstants;
 
 public class JmmOptimizer implements JmmOptimization {
     @Override
     public OllirResult toOllir(JmmSemanticsResult jmmSemanticsResult) {
 
-        JmmOptimizerVisitor visitor = new JmmOptimizerVisitor((SymbolTableCR) jmmSemanticsResult.getSymbolTable());
+        JmmOptimizerVisitor visitor = new JmmOptimizerVisitor((SymbolTableCR) jmmSemanticsResult.getSymbolTable(),
+                jmmSemanticsResult.getConfig().getOrDefault("parallel", "false").equals("true"));
         JmmNode root = jmmSemanticsResult.getRootNode();
 
         //Need to use StringBuilder instead of String because strings in java are immutable
         StringBuilder ollirCode = new StringBuilder();
 
-        visitor.visit(root,ollirCode);
+        CompilerMetrics.Phase ollirPhase = CompilerMetrics.phase("ollir");
+        try {
+            visitor.visit(root,ollirCode);
+            CompilerMetrics.count("ollirChars", ollirCode.length());
+        } finally {
+            ollirPhase.close();
+        }
 
-        if(jmmSemanticsResult.getConfig().getOrDefault("optimize", "false").equals("true"))
-            return optimize(new OllirResult(jmmSemanticsResult, ollirCode.toString(), jmmSemanticsResult.getReports()));
+        // The OLLIR passes and register allocation are left to optimize(OllirResult), which every caller runs once
         return new OllirResult(jmmSemanticsResult, ollirCode.toString(), jmmSemanticsResult.getReports());
     }
 
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult jmmSemanticsResult) {
         JmmNode root = jmmSemanticsResult.getRootNode();
+        // Constants are propagated later, on the OLLIR CFG, so only literal expressions are folded here
         if(jmmSemanticsResult.getConfig().getOrDefault("optimize", "false").equals("true")) {
-            boolean changes = true;
-            while(changes) {
-                ConstantPropagation constantProp = new ConstantPropagation();
-                ConstantFolding constantFold = new ConstantFolding();
-                changes = constantFold.visit(root,1);
-                changes = constantProp.visit(root,1) || changes;
+            CompilerMetrics.Phase astOptimizationPhase = CompilerMetrics.phase("astOptimization");
+            try {
+                boolean changes = true;
+                int round = 0;
+                while(changes) {
+                    round++;
+                    CompilerMetrics.count("fixpointIterations", 1);
+                    ConstantFolding constantFold = new ConstantFolding();
+                    CompilerMetrics.Phase foldingPhase = CompilerMetrics.phase("constantFolding.round" + round);
+                    try {
+                        constantFold.visit(root,1);
+                        changes = constantFold.isTestChanges();
+                        CompilerMetrics.count("changed", changes ? 1 : 0);
+                    } finally {
+                        foldingPhase.close();
+                    }
+                    // Folding can turn a condition into a literal, and a pruned branch can leave more to fold
+                    DeadBranchElimination branchPruning = new DeadBranchElimination();
+                    CompilerMetrics.Phase pruningPhase = CompilerMetrics.phase("branchPruning.round" + round);
+                    try {
+                        branchPruning.visit(root,1);
+                        CompilerMetrics.count("changed", branchPruning.isTestChanges() ? 1 : 0);
+                    } finally {
+                        pruningPhase.close();
+                    }
+                    changes = branchPruning.isTestChanges() || changes;
+                }
+            } finally {
+                astOptimizationPhase.close();
             }
         }
         return jmmSemanticsResult;
@@ -44,6 +81,27 @@ public class JmmOptimizer implements JmmOptimization {
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
+        if(ollirResult.getConfig().getOrDefault("optimize", "false").equals("true")) {
+            CompilerMetrics.Phase propagationPhase = CompilerMetrics.phase("constantPropagation");
+            try {
+                propagateConstants(ollirResult.getOllirClass());
+            } finally {
+                propagationPhase.close();
+            }
+            CompilerMetrics.Phase numberingPhase = CompilerMetrics.phase("valueNumbering");
+            try {
+                numberValues(ollirResult.getOllirClass());
+            } finally {
+                numberingPhase.close();
+            }
+            CompilerMetrics.Phase deadCodePhase = CompilerMetrics.phase("deadCodeElimination");
+            try {
+                eliminateDeadCode(ollirResult.getOllirClass());
+            } finally {
+                deadCodePhase.close();
+            }
+        }
+
         // check for register flag
         int numRegisters = -1;
         if(ollirResult.getConfig().containsKey("registerAllocation")) {
@@ -54,10 +112,47 @@ public class JmmOptimizer implements JmmOptimization {
             return ollirResult;
         }
         else {
-            RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult,numRegisters, ollirResult.getConfig());
-            registerAllocation.regAlloc();
+            CompilerMetrics.Phase allocationPhase = CompilerMetrics.phase("registerAllocation");
+            try {
+                RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult,numRegisters, ollirResult.getConfig());
+                registerAllocation.regAlloc();
+            } finally {
+                allocationPhase.close();
+            }
         }
         return ollirResult;
     }
 
+    private void propagateConstants(ClassUnit ollirClass) {
+        for(Method method : ollirClass.getMethods()) {
+            ControlFlow.rebuild(method);
+            SparseConditionalConstants constants = new SparseConditionalConstants(method);
+            constants.optimize();
+            CompilerMetrics.count("worklistSteps", constants.getIterations());
+            CompilerMetrics.count("rewrites", constants.getRewrites());
+            CompilerMetrics.count("foldedBranches", constants.getFoldedBranches());
+            CompilerMetrics.count("removedInstructions", constants.getRemovedInstructions());
+        }
+    }
+
+    private void numberValues(ClassUnit ollirClass) {
+        for(Method method : ollirClass.getMethods()) {
+            LocalValueNumbering valueNumbering = new LocalValueNumbering(method);
+            valueNumbering.optimize();
+            CompilerMetrics.count("blocks", valueNumbering.getBlocks());
+            CompilerMetrics.count("replaced", valueNumbering.getReplaced());
+            CompilerMetrics.count("propagated", valueNumbering.getPropagated());
+        }
+    }
+
+    private void eliminateDeadCode(ClassUnit ollirClass) {
+        for(Method method : ollirClass.getMethods()) {
+            DeadCodeElimination deadCode = new DeadCodeElimination(method);
+            deadCode.optimize();
+            CompilerMetrics.count("unreachable", deadCode.getUnreachable());
+            CompilerMetrics.count("deadStores", deadCode.getDeadStores());
+            CompilerMetrics.count("redundantJumps", deadCode.getRedundantJumps());
+            CompilerMetrics.count("removedLocals", deadCode.getRemovedLocals());
+        }
+    }
 }
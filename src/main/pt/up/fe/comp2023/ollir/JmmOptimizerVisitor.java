@@ -5,12 +5,16 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2023.analysis.SymbolTableCR;
+import pt.up.fe.comp2023.analysis.TypeAnnotator;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>> {
     private final SymbolTableCR symbolTable;
+    private final NamingContext naming;
+    private final boolean parallel;
     private int indent = 0;
     private String method = "";
 
@@ -34,8 +38,15 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
             ASTDict.BOOL,
             ASTDict.THIS);
 
-    public JmmOptimizerVisitor(SymbolTableCR symbolTable){
+    public JmmOptimizerVisitor(SymbolTableCR symbolTable, boolean parallel){
+        this(symbolTable, new NamingContext(), parallel, 0);
+    }
+
+    private JmmOptimizerVisitor(SymbolTableCR symbolTable, NamingContext naming, boolean parallel, int indent){
         this.symbolTable = symbolTable;
+        this.naming = naming;
+        this.parallel = parallel;
+        this.indent = indent;
         this.buildVisitor();
     }
     @Override
@@ -114,17 +125,27 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                  .append("\t".repeat(--this.indent))
                  .append("}\n");
 
-        //Visit children: Only need to visit method declarations because fields already dealt with
-        for(JmmNode child : jmmNode.getChildren()){
-            if(child.getKind().equals(ASTDict.METHOD_DECL))
-                visit(child, ollirCode);
-        }
+        //Visit children: Only need to visit method declarations because fields already dealt with.
+        //Each method gets its own buffer and names, so they can be generated in any order and
+        //concatenated in declaration order
+        List<JmmNode> methods = jmmNode.getChildren().stream()
+                .filter(child -> child.getKind().equals(ASTDict.METHOD_DECL))
+                .toList();
+        Stream<JmmNode> methodStream = parallel ? methods.parallelStream() : methods.stream();
+        for(String methodCode : methodStream.map(this::methodOllir).toList())
+            ollirCode.append(methodCode);
 
         ollirCode.append("}");
 
         return null;
     }
 
+    private String methodOllir(JmmNode method){
+        StringBuilder methodCode = new StringBuilder();
+        new JmmOptimizerVisitor(symbolTable, new NamingContext(), parallel, indent).visit(method, methodCode);
+        return methodCode.toString();
+    }
+
     private List<String> methodDeclarationVisit(JmmNode jmmNode, StringBuilder ollirCode){
 
         this.method = jmmNode.get("name");
@@ -213,7 +234,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                 JmmNode condition = jmmNode.getJmmChild(0);
                 JmmNode ifThen = jmmNode.getJmmChild(1);
                 JmmNode elseThen = jmmNode.getJmmChild(2);
-                List<String> thenEndif = Utils.nextThenEndIf();
+                List<String> thenEndif = naming.nextThenEndIf();
                 List<String> cond_code = visit(condition,ollirCode);
 
                 ollirCode.append("\n")
@@ -235,7 +256,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
             case "while" -> {
                 JmmNode condition = jmmNode.getJmmChild(0);
                 JmmNode whileDo = jmmNode.getJmmChild(1);
-                List<String> bodyEndloop = Utils.nextBodyEndLoop();
+                List<String> bodyEndloop = naming.nextBodyEndLoop();
                 List<String> cond_code = visit(condition,ollirCode);
 
                 ollirCode.append("\n")
@@ -277,8 +298,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
 
         //normal assign
         if(symbolTable.localVarExists(var_name,this.method)){
-            List<Object> local_var_info = symbolTable.getLocalVarType(var_name, this.method);
-            String var_type = Utils.toOllirType((String) local_var_info.get(0), (boolean) local_var_info.get(1));
+            String var_type = this.ollirType(jmmNode);
 
             JmmNode child = jmmNode.getChildren().get(0);
             switch (child.getKind()) {
@@ -286,7 +306,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                     List<String> code = visit(child, ollirCode);
                     ollirCode.append(code.get(1).replace(code.get(0), var_name));
                     ollirCode.deleteCharAt(ollirCode.length() - 1); //Remove x2 last \n
-                    Utils.currentTemp--;
+                    naming.releaseTemp();
                 }
                 case ASTDict.METHOD_CALL -> {
                     List<String> code = visit(child, ollirCode);
@@ -338,8 +358,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         }
         //param assign
         else if(symbolTable.paramExists(var_name, this.method)){
-            List<Object> param_info = symbolTable.getParamType(var_name, this.method);
-            String var_type = Utils.toOllirType((String) param_info.get(0), (boolean) param_info.get(1));
+            String var_type = this.ollirType(jmmNode);
 
             JmmNode child = jmmNode.getChildren().get(0);
             switch (child.getKind()) {
@@ -347,7 +366,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                     List<String> code = visit(child, ollirCode);
                     ollirCode.append(code.get(1).replace(code.get(0), var_name));
                     ollirCode.deleteCharAt(ollirCode.length() - 1); //Remove x2 last \n
-                    Utils.currentTemp--;
+                    naming.releaseTemp();
                 }
                 case ASTDict.METHOD_CALL -> {
                     List<String> code = visit(child, ollirCode);
@@ -403,8 +422,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         //field assign
         else{
 
-            List<Object> field_info = symbolTable.getFieldType(var_name);
-            String var_type = Utils.toOllirType((String) field_info.get(0), (boolean) field_info.get(1));
+            String var_type = this.ollirType(jmmNode);
 
             JmmNode child = jmmNode.getChildren().get(0);
             switch (child.getKind()) {
@@ -448,7 +466,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
             }
             case ASTDict.INTEGER ->{
                 List<String> int_var = visit(index, ollirCode);
-                String temp = Utils.nextTemp();
+                String temp = naming.nextTemp();
                 String prefix_code = "\t".repeat(indent)+temp + ".i32 :=.i32 "+int_var.get(0)+".i32;\n";
                 index_code = List.of(temp, prefix_code);
             }
@@ -476,7 +494,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
 
     private List<String> notOperatorVisit (JmmNode jmmNode, StringBuilder ollirCode){
         List<String> code = visit(jmmNode.getJmmChild(0), ollirCode);
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
 
         return List.of(temp, code.get(1)+"\t".repeat(indent)+temp+".bool :=.bool !.bool " + code.get(0) + ".bool;\n");
     }
@@ -489,7 +507,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         List<String> rhsCode = visit(rhs, ollirCode);
         StringBuilder prefixCode = new StringBuilder();
 
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
 
         prefixCode.append(lhsCode.get(1))
                   .append(rhsCode.get(1))
@@ -515,7 +533,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         List<String> rhsCode = visit(rhs, ollirCode);
         StringBuilder prefixCode = new StringBuilder();
 
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
 
         prefixCode.append(lhsCode.get(1))
                 .append(rhsCode.get(1))
@@ -542,7 +560,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         List<String> rhsCode = visit(rhs, ollirCode);
         StringBuilder prefixCode = new StringBuilder();
 
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
 
         prefixCode.append(lhsCode.get(1))
                 .append(rhsCode.get(1))
@@ -581,7 +599,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
             }
             case ASTDict.INTEGER, ASTDict.ARRAY_INDEX, ASTDict.METHOD_CALL ->{
                 result = visit(index_child, ollirCode);
-                String temp = Utils.nextTemp();
+                String temp = naming.nextTemp();
                 result = List.of(temp, result.get(1)+"\t".repeat(indent) + temp + ".i32 :=.i32 " + result.get(0) + ".i32;\n");
             }
         }
@@ -590,7 +608,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         sufix.append(result.get(0)).append(".i32]");
 
         if(jmmNode.getJmmParent().getKind().equals(ASTDict.BINARY_OP) || jmmNode.getJmmParent().getKind().equals(ASTDict.METHOD_CALL)){
-            String temp2 = Utils.nextTemp();
+            String temp2 = naming.nextTemp();
             String sufix2 = "\t".repeat(indent)+temp2+".i32 :=.i32 "+ sufix+".i32;\n";
             return List.of(temp2, prefix+sufix2);
         }
@@ -600,7 +618,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
 
     private List<String> arrayLengthVisit(JmmNode jmmNode, StringBuilder ollirCode){
 
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
         List<String> array = visit(jmmNode.getJmmChild(0), ollirCode);
         String prefix = array.get(1)+"\t".repeat(indent)+temp+".i32 :=.i32 arraylength(" + array.get(0)+  ".array.i32).i32;\n";
 
@@ -633,7 +651,6 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
 
         List<JmmNode> params = jmmNode.getChildren();
         params = params.subList(1, params.size());
-        String param_value = "";
         String param_type = "";
         StringBuilder params_prefix = new StringBuilder();
         StringBuilder params_code = new StringBuilder();
@@ -659,8 +676,8 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                 called_type = "";
             }
             else{
-                called_type_aux = symbolTable.getAnyType(called, this.method);
-                called_type = Utils.toOllirType(called_type_aux.getName(),called_type_aux.isArray());
+                called_type_aux = TypeAnnotator.getType(calledNode, symbolTable, this.method);
+                called_type = this.ollirType(calledNode);
             }
 
 
@@ -680,22 +697,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
                 case ASTDict.BOOL, ASTDict.NOT_OP, ASTDict.COMPARE_OP, ASTDict.LOGICAL_OP -> param_type = ".bool";
                 case ASTDict.INTEGER, ASTDict.BINARY_OP, ASTDict.ARRAY_LENGTH, ASTDict.ARRAY_INDEX-> param_type = ".i32";
                 //class field, local var or method params
-                case ASTDict.IDENTIFIER -> {
-                    param_value = param.get("var");
-
-                    if(symbolTable.fieldExists(param_value)){
-                        List<Object> param_type_aux = symbolTable.getFieldType(param_value);
-                        param_type = Utils.toOllirType((String) param_type_aux.get(0), (boolean) param_type_aux.get(1));
-                    }
-                    else if(symbolTable.localVarExists(param_value, this.method)){
-                        List<Object> param_type_aux = symbolTable.getLocalVarType(param_value, this.method);
-                        param_type = Utils.toOllirType((String) param_type_aux.get(0), (boolean) param_type_aux.get(1));
-                    }
-                    else{
-                        List<Object> param_type_aux = symbolTable.getParamType(param_value, this.method);
-                        param_type = Utils.toOllirType((String) param_type_aux.get(0), (boolean) param_type_aux.get(1));
-                    }
-                }
+                case ASTDict.IDENTIFIER -> param_type = this.ollirType(param);
                 case ASTDict.METHOD_CALL -> {
                     param_type = "";
                 }
@@ -710,7 +712,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         JmmNode parent = jmmNode.getJmmParent();
         if(parent.getKind().equals(ASTDict.VAR_ASSIGN)){
 
-            String parent_type = Utils.toOllirType(symbolTable.getAnyType(parent.get("var"), this.method).getName(), symbolTable.getAnyType(parent.get("var"), this.method).isArray());
+            String parent_type = this.ollirType(parent);
 
             params_code.append(")").append(parent_type).append(";\n\n");
             called_code.append(params_code);
@@ -718,7 +720,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         }
         //This is really stupid, but I'm not changing it now
         else if(parent.getKind().equals(ASTDict.BINARY_OP) || parent.getKind().equals(ASTDict.PARENTHESES) || parent.getKind().equals(ASTDict.METHOD_CALL) || parent.getKind().equals(ASTDict.ARRAY_INDEX) || parent.getKind().equals(ASTDict.NOT_OP) || parent.getKind().equals(ASTDict.COMPARE_OP) || parent.getKind().equals(ASTDict.LOGICAL_OP)) {
-            String temp = Utils.nextTemp();
+            String temp = naming.nextTemp();
             params_code.append(")").append(return_type).append(";\n\n");
             called_code.append(params_code);
             String ret1 = temp + return_type;
@@ -734,6 +736,11 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         return null;
     }
 
+    // Suffix cached by the type annotation of the analysis
+    private String ollirType(JmmNode node){
+        return TypeAnnotator.getOllirType(node, symbolTable, this.method);
+    }
+
     private List<String> integerVisit(JmmNode jmmNode, StringBuilder ollirCode){
         return List.of(jmmNode.get("value"), "");
     }
@@ -753,9 +760,8 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
         }
         //Class field
         else if(symbolTable.fieldExists(value)){
-            String temp = Utils.nextTemp();
-            List<Object> field_type_aux = symbolTable.getFieldType(value);
-            String field_type = Utils.toOllirType((String) field_type_aux.get(0), (boolean) field_type_aux.get(1));
+            String temp = naming.nextTemp();
+            String field_type = this.ollirType(jmmNode);
 
             prefix.append("\t".repeat(indent)).append(temp).append(field_type).append(" :=").append(field_type).append(" getfield(this, ").append(value).append(field_type).append(")").append(field_type).append(";\n");
             value = temp;
@@ -780,7 +786,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
             }
             /*case ASTDict.INTEGER -> {
                 List<String> int_code = visit(child, ollirCode);
-                String temp = Utils.nextTemp();
+                String temp = naming.nextTemp();
 
                 inside = temp;
                 before = "\t".repeat(indent) + temp+".i32 :=.i32 "+int_code.get(0)+".i32;\n";
@@ -790,7 +796,7 @@ public class JmmOptimizerVisitor extends AJmmVisitor<StringBuilder,List<String>>
     }
 
     private List<String> newObjectVisit (JmmNode jmmNode, StringBuilder ollirCode){
-        String temp = Utils.nextTemp();
+        String temp = naming.nextTemp();
         String type = jmmNode.get("var");
         String prefix = "\t".repeat(indent)+ temp + "." + type + ":=." + type + " new(" + type +")." + type + ";\n"
                 + "\t".repeat(indent) + "invokespecial(" + temp +"."+type+",\"<init>\").V;\n";
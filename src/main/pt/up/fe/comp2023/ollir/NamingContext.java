@@ -0,0 +1,28 @@
+package pt.up.fe.comp2023.ollir;
+
+import java.util.List;
+
+// Temp and label counters of a single method's OLLIR. Every method gets its own context, so methods
+// and compilations running on different threads never share names.
+public class NamingContext {
+    private int currentTemp = 0;
+    private int ifCounter = 0;
+    private int whileCounter = 0;
+
+    public String nextTemp(){
+        return "temp" + currentTemp++;
+    }
+
+    // Gives back the last temp, when its value ended up assigned straight to a variable
+    public void releaseTemp(){
+        currentTemp--;
+    }
+
+    public List<String> nextThenEndIf(){
+        return List.of("THEN"+ifCounter++, "ENDIF"+ifCounter++);
+    }
+
+    public List<String> nextBodyEndLoop(){
+        return List.of("BODY"+whileCounter++, "ENDLOOP"+whileCounter++);
+    }
+}
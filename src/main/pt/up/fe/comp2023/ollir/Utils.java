@@ -1,14 +1,8 @@
 package pt.up.fe.comp2023.ollir;
 
 
-import java.util.List;
-
 public class Utils {
 
-    static int currentTemp = 0;
-    static int ifCounter = 0;
-    static int whileCounter = 0;
-
     public static String toOllirType(String type, boolean is_array){
 
         StringBuilder ollirType = new StringBuilder();
@@ -27,16 +21,4 @@ public class Utils {
     public static String boolToOllir(boolean value){
         return value ? "1" : "0";
     }
-
-    public static String nextTemp(){
-        return "temp" + currentTemp++;
-    }
-
-    public static List<String> nextThenEndIf(){
-        return List.of("THEN"+ifCounter++, "ENDIF"+ifCounter++);
-    }
-
-    public static List<String> nextBodyEndLoop(){
-        return List.of("BODY"+whileCounter++, "ENDLOOP"+whileCounter++);
-    }
 }
@@ -18,11 +18,9 @@ public class ConstantFolding extends PostorderJmmVisitor<Integer, Boolean> {
         addVisit("Not", this::visitNot);
     }
 
+    // The postorder visitor already walks the children, so nothing is left to do here
     private Boolean defaultVisit(JmmNode jmmNode, Integer dummy) {
-        for(JmmNode node: jmmNode.getChildren()) {
-            testChanges = visit(node,1) || testChanges;
-        }
-        return testChanges;
+        return false;
     }
 
     private Boolean visitBinaryOp(JmmNode jmmNode, Integer dummy) {
@@ -40,6 +38,7 @@ public class ConstantFolding extends PostorderJmmVisitor<Integer, Boolean> {
             replacement.put("lineStart",jmmNode.get("lineStart"));
             replacement.put("colStart",jmmNode.get("colStart"));
             jmmNode.replace(replacement);
+            testChanges = true;
             return true;
         }
         return false;
@@ -60,6 +59,7 @@ public class ConstantFolding extends PostorderJmmVisitor<Integer, Boolean> {
             replacement.put("lineStart",jmmNode.get("lineStart"));
             replacement.put("colStart",jmmNode.get("colStart"));
             jmmNode.replace(replacement);
+            testChanges = true;
             return true;
         }
         return false;
@@ -79,6 +79,7 @@ public class ConstantFolding extends PostorderJmmVisitor<Integer, Boolean> {
             replacement.put("lineStart",jmmNode.get("lineStart"));
             replacement.put("colStart",jmmNode.get("colStart"));
             jmmNode.replace(replacement);
+            testChanges = true;
             return true;
         }
         return false;
@@ -96,6 +97,7 @@ public class ConstantFolding extends PostorderJmmVisitor<Integer, Boolean> {
             replacement.put("lineStart",jmmNode.get("lineStart"));
             replacement.put("colStart",jmmNode.get("colStart"));
             jmmNode.replace(replacement);
+            testChanges = true;
             return true;
         }
         return false;
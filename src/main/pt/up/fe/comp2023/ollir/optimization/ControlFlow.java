@@ -0,0 +1,79 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Edits to the instruction list of a method that keep its labels and CFG consistent
+public class ControlFlow {
+
+    private ControlFlow() {
+    }
+
+    // buildCFG only ever adds edges, so the old ones are cleared first. This also drops the duplicate
+    // edges left by every pass that built the CFGs of the class again. The begin and end nodes are
+    // reached through the instructions, Method refuses to return them before the first build
+    public static void rebuild(Method method) {
+        clearEdges(method);
+        method.buildCFG();
+    }
+
+    // Also done before every edit, so no edge of the begin or end node is left on a removed instruction
+    private static void clearEdges(Method method) {
+        for (Instruction inst : method.getInstructions()) {
+            for (Node pred : inst.getPredecessors()) {
+                if (pred.getNodeType() == NodeType.BEGIN) pred.getSuccessors().clear();
+            }
+            for (Node succ : inst.getSuccessors()) {
+                if (succ.getNodeType() == NodeType.END) succ.getPredecessors().clear();
+            }
+        }
+        for (Instruction inst : method.getInstructions()) {
+            inst.getSuccessors().clear();
+            inst.getPredecessors().clear();
+        }
+    }
+
+    // Removes the given instructions, rebuild has to run afterwards. Their labels move to the next
+    // instruction that stays, or are dropped when nothing follows, as then no jump that stays targets them
+    public static void remove(Method method, Set<Instruction> removed) {
+        if (removed.isEmpty()) return;
+        clearEdges(method);
+        List<Instruction> instructions = method.getInstructions();
+        HashMap<Instruction, Instruction> moveTo = new HashMap<>();
+        Instruction next = null;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            Instruction inst = instructions.get(i);
+            if (removed.contains(inst)) {
+                moveTo.put(inst, next);
+            } else {
+                next = inst;
+            }
+        }
+
+        Iterator<Map.Entry<String, Instruction>> labels = method.getLabels().entrySet().iterator();
+        while (labels.hasNext()) {
+            Map.Entry<String, Instruction> label = labels.next();
+            if (!moveTo.containsKey(label.getValue())) continue;
+            Instruction target = moveTo.get(label.getValue());
+            if (target == null) {
+                labels.remove();
+            } else {
+                label.setValue(target);
+            }
+        }
+        instructions.removeIf(removed::contains);
+    }
+
+    // Puts the replacement where the instruction was, keeping its labels. Rebuild has to run afterwards
+    public static void replace(Method method, Instruction inst, Instruction replacement) {
+        clearEdges(method);
+        List<Instruction> instructions = method.getInstructions();
+        instructions.set(instructions.indexOf(inst), replacement);
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (label.getValue() == inst) {
+                label.setValue(replacement);
+            }
+        }
+    }
+}
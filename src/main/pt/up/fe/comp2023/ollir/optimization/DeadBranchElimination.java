@@ -0,0 +1,56 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+
+// Runs after ConstantFolding: an if with a literal condition is replaced by the branch it always takes,
+// and a while that never runs is replaced by an empty block
+public class DeadBranchElimination extends PostorderJmmVisitor<Integer, Boolean> {
+
+    boolean testChanges = false;
+
+    @Override
+    protected void buildVisitor() {
+        setDefaultVisit(this::defaultVisit);
+        addVisit("ConditionStmt", this::visitConditional);
+    }
+
+    // The postorder visitor already walks the children, so nothing is left to do here
+    private Boolean defaultVisit(JmmNode jmmNode, Integer dummy) {
+        return false;
+    }
+
+    private Boolean visitConditional(JmmNode jmmNode, Integer dummy) {
+        JmmNode condition = jmmNode.getJmmChild(0);
+        while(condition.getKind().equals("Parentheses")) {
+            condition = condition.getJmmChild(0);
+        }
+        if(!condition.getKind().equals("Boolean")) {
+            return false;
+        }
+        boolean value = Boolean.parseBoolean(condition.get("value"));
+
+        // Changes are recorded in the flag
+        if(jmmNode.get("conditional").equals("if")) {
+            // The branch is detached first, replace would swap it with the statement otherwise
+            JmmNode taken = jmmNode.removeJmmChild(value ? 1 : 2);
+            jmmNode.replace(taken);
+            testChanges = true;
+            return true;
+        }
+        if(!value) {
+            JmmNode replacement = new JmmNodeImpl("ThenStmt");
+            replacement.put("lineStart",jmmNode.get("lineStart"));
+            replacement.put("colStart",jmmNode.get("colStart"));
+            jmmNode.replace(replacement);
+            testChanges = true;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isTestChanges() {
+        return testChanges;
+    }
+}
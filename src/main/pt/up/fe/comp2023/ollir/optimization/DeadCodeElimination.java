@@ -0,0 +1,189 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Removes instructions that can't be reached from the start of a method, assignments to locals whose
+// value is never read, and gotos to the instruction right after them. Liveness comes from the SSA
+// form: a version nothing reads is dead, and removing its assignment may kill the versions it read,
+// so one worklist pass finds every dead store. Calls, array accesses and divisions can throw or have
+// side effects, so their assignments always stay.
+public class DeadCodeElimination {
+    private final Method method;
+
+    private int unreachable = 0;
+
+    private int deadStores = 0;
+
+    private int redundantJumps = 0;
+
+    private int removedLocals = 0;
+
+    public DeadCodeElimination(Method method) {
+        this.method = method;
+    }
+
+    public void optimize() {
+        if (method.getInstructions().isEmpty()) return;
+        ControlFlow.rebuild(method);
+        removeUnreachable();
+        removeDeadStores();
+        removeRedundantJumps();
+        removeUnusedLocals();
+        ControlFlow.rebuild(method);
+    }
+
+    private void removeUnreachable() {
+        DominatorTree dominators = new DominatorTree(method);
+        dominators.build();
+        Set<Instruction> removed = new HashSet<>();
+        for (Instruction inst : method.getInstructions()) {
+            if (!dominators.isReachable(inst)) {
+                removed.add(inst);
+            }
+        }
+        unreachable = removed.size();
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+    }
+
+    private void removeDeadStores() {
+        SsaForm ssa = new SsaForm(method);
+        ssa.build();
+
+        HashMap<String, Integer> reads = new HashMap<>();
+        HashMap<String, Instruction> assignments = new HashMap<>();
+        HashMap<String, SsaForm.Phi> phis = new HashMap<>();
+        for (Instruction inst : method.getInstructions()) {
+            for (SsaForm.Phi phi : ssa.getPhis(inst)) {
+                phis.put(phi.getDest(), phi);
+                phi.getArgs().values().forEach(arg -> reads.merge(arg, 1, Integer::sum));
+            }
+            for (Operand use : SsaForm.uses(inst)) {
+                reads.merge(use.getName(), 1, Integer::sum);
+            }
+            String dest = assignedVersion(ssa, inst);
+            if (dest != null) {
+                assignments.put(dest, inst);
+            }
+        }
+
+        Deque<String> worklist = new ArrayDeque<>();
+        for (String version : assignments.keySet()) {
+            if (!reads.containsKey(version)) worklist.add(version);
+        }
+        for (String version : phis.keySet()) {
+            if (!reads.containsKey(version)) worklist.add(version);
+        }
+
+        Set<Instruction> removed = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            String version = worklist.poll();
+            List<String> freed = new ArrayList<>();
+            Instruction inst = assignments.get(version);
+            if (inst != null) {
+                if (!hasNoSideEffects(((AssignInstruction) inst).getRhs()) || !removed.add(inst)) continue;
+                SsaForm.uses(inst).forEach(use -> freed.add(use.getName()));
+            } else {
+                SsaForm.Phi phi = phis.remove(version);
+                if (phi == null) continue;
+                freed.addAll(phi.getArgs().values());
+            }
+            for (String name : freed) {
+                if (reads.merge(name, -1, Integer::sum) == 0) {
+                    reads.remove(name);
+                    if (assignments.containsKey(name) || phis.containsKey(name)) worklist.add(name);
+                }
+            }
+        }
+        deadStores = removed.size();
+
+        ssa.restoreNames();
+        ControlFlow.remove(method, removed);
+        ControlFlow.rebuild(method);
+    }
+
+    private String assignedVersion(SsaForm ssa, Instruction inst) {
+        if (!(inst instanceof AssignInstruction assign)) return null;
+        if (assign.getDest() instanceof ArrayOperand || !(assign.getDest() instanceof Operand dest)) return null;
+        return ssa.getOriginal(dest.getName()) != null ? dest.getName() : null;
+    }
+
+    private boolean hasNoSideEffects(Instruction rhs) {
+        return switch (rhs.getInstType()) {
+            case NOPER -> !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            case UNARYOPER, GETFIELD -> true;
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                if (binaryOp.getOperation().getOpType() != OperationType.DIV) yield true;
+                // Dividing by zero throws
+                yield binaryOp.getRightOperand() instanceof LiteralElement divisor && !divisor.getLiteral().equals("0");
+            }
+            default -> false;
+        };
+    }
+
+    private void removeRedundantJumps() {
+        List<Instruction> instructions = method.getInstructions();
+        Set<Instruction> removed = new HashSet<>();
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            if (instructions.get(i) instanceof GotoInstruction jump
+                    && method.getLabels().get(jump.getLabel()) == instructions.get(i + 1)) {
+                removed.add(jump);
+            }
+        }
+        redundantJumps = removed.size();
+        ControlFlow.remove(method, removed);
+    }
+
+    // Locals nothing refers to anymore are dropped from the var table and the others are packed right after
+    // the parameters, which is what lowers the locals limit when registers aren't allocated
+    private void removeUnusedLocals() {
+        Set<String> referenced = new HashSet<>();
+        for (Instruction inst : method.getInstructions()) {
+            SsaForm.uses(inst).forEach(use -> referenced.add(use.getName()));
+            if (inst instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest) {
+                referenced.add(dest.getName());
+            }
+        }
+
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+        int nextReg = 0;
+        List<Map.Entry<String, Descriptor>> locals = new ArrayList<>();
+        for (Map.Entry<String, Descriptor> var : varTable.entrySet()) {
+            Descriptor descriptor = var.getValue();
+            if (descriptor.getScope() != VarScope.LOCAL || var.getKey().equals("this")
+                    || descriptor.getVarType().getTypeOfElement() == ElementType.THIS) {
+                nextReg = Math.max(nextReg, descriptor.getVirtualReg() + 1);
+            } else {
+                locals.add(var);
+            }
+        }
+        locals.sort(Comparator.comparingInt(var -> var.getValue().getVirtualReg()));
+        for (Map.Entry<String, Descriptor> var : locals) {
+            if (referenced.contains(var.getKey())) {
+                var.getValue().setVirtualReg(nextReg++);
+            } else {
+                varTable.remove(var.getKey());
+                removedLocals++;
+            }
+        }
+    }
+
+    public int getUnreachable() {
+        return unreachable;
+    }
+
+    public int getDeadStores() {
+        return deadStores;
+    }
+
+    public int getRedundantJumps() {
+        return redundantJumps;
+    }
+
+    public int getRemovedLocals() {
+        return removedLocals;
+    }
+}
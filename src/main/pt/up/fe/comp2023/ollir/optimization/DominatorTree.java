@@ -0,0 +1,200 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Dominators of the instructions of a method, computed over the same successors LivenessAnalysis walks,
+// with the iterative algorithm of Cooper, Harvey and Kennedy. Instructions are indexed by their CFG id,
+// so buildCFG must have run. Instructions that can't be reached from the first one have no dominator.
+public class DominatorTree {
+    private static final int NONE = -1;
+
+    private final List<Instruction> instructionList;
+
+    private final Instruction[] byId;
+
+    private final int[] idom;
+
+    private final int[] postorderNumber;
+
+    private final List<Instruction> reversePostorder;
+
+    private final HashMap<Integer, List<Instruction>> children;
+
+    private final HashMap<Integer, Set<Instruction>> frontier;
+
+    private int iterations = 0;
+
+    public DominatorTree(Method method) {
+        this.instructionList = method.getInstructions();
+        int size = instructionList.size() + 1;
+        this.byId = new Instruction[size];
+        for (Instruction inst : instructionList) {
+            byId[inst.getId()] = inst;
+        }
+        this.idom = new int[size];
+        this.postorderNumber = new int[size];
+        Arrays.fill(idom, NONE);
+        Arrays.fill(postorderNumber, NONE);
+        this.reversePostorder = new ArrayList<>();
+        this.children = new HashMap<>();
+        this.frontier = new HashMap<>();
+    }
+
+    public void build() {
+        if (instructionList.isEmpty()) return;
+        computeReversePostorder();
+
+        int entry = getEntry().getId();
+        idom[entry] = entry;
+        boolean changes;
+        do {
+            iterations++;
+            changes = false;
+            for (Instruction inst : reversePostorder) {
+                int id = inst.getId();
+                if (id == entry) continue;
+                int newIdom = NONE;
+                for (Instruction pred : predecessors(inst)) {
+                    if (idom[pred.getId()] == NONE) continue;
+                    newIdom = newIdom == NONE ? pred.getId() : intersect(pred.getId(), newIdom);
+                }
+                if (idom[id] != newIdom) {
+                    idom[id] = newIdom;
+                    changes = true;
+                }
+            }
+        } while (changes);
+
+        for (Instruction inst : reversePostorder) {
+            children.put(inst.getId(), new ArrayList<>());
+            frontier.put(inst.getId(), new LinkedHashSet<>());
+        }
+        for (Instruction inst : reversePostorder) {
+            if (inst.getId() != entry) {
+                children.get(idom[inst.getId()]).add(inst);
+            }
+        }
+        computeFrontiers();
+    }
+
+    // Iterative depth first search, long methods would overflow the stack otherwise
+    private void computeReversePostorder() {
+        Instruction entry = getEntry();
+        List<Instruction> postorder = new ArrayList<>();
+        boolean[] visited = new boolean[byId.length];
+        Deque<Iterator<Instruction>> stack = new ArrayDeque<>();
+        Deque<Instruction> path = new ArrayDeque<>();
+        visited[entry.getId()] = true;
+        stack.push(successors(entry).iterator());
+        path.push(entry);
+        while (!stack.isEmpty()) {
+            Iterator<Instruction> succs = stack.peek();
+            if (succs.hasNext()) {
+                Instruction succ = succs.next();
+                if (!visited[succ.getId()]) {
+                    visited[succ.getId()] = true;
+                    stack.push(successors(succ).iterator());
+                    path.push(succ);
+                }
+            } else {
+                stack.pop();
+                Instruction done = path.pop();
+                postorderNumber[done.getId()] = postorder.size();
+                postorder.add(done);
+            }
+        }
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            reversePostorder.add(postorder.get(i));
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (postorderNumber[a] < postorderNumber[b]) a = idom[a];
+            while (postorderNumber[b] < postorderNumber[a]) b = idom[b];
+        }
+        return a;
+    }
+
+    // The entry is also reached from the start of the method, which counts as one more predecessor
+    private void computeFrontiers() {
+        int entry = getEntry().getId();
+        for (Instruction inst : reversePostorder) {
+            int id = inst.getId();
+            List<Instruction> preds = predecessors(inst);
+            int numPreds = preds.size() + (id == entry ? 1 : 0);
+            if (numPreds < 2) continue;
+            int stop = id == entry ? NONE : idom[id];
+            for (Instruction pred : preds) {
+                int runner = pred.getId();
+                while (runner != NONE && runner != stop && idom[runner] != NONE) {
+                    frontier.get(runner).add(inst);
+                    runner = runner == entry ? NONE : idom[runner];
+                }
+            }
+        }
+    }
+
+    public Instruction getEntry() {
+        return instructionList.get(0);
+    }
+
+    public boolean isReachable(Instruction inst) {
+        return idom[inst.getId()] != NONE;
+    }
+
+    // Immediate dominator, null for the entry and for unreachable instructions
+    public Instruction getIdom(Instruction inst) {
+        int id = inst.getId();
+        if (idom[id] == NONE || id == getEntry().getId()) return null;
+        return byId[idom[id]];
+    }
+
+    public boolean dominates(Instruction a, Instruction b) {
+        if (!isReachable(a) || !isReachable(b)) return false;
+        int entry = getEntry().getId();
+        int runner = b.getId();
+        while (runner != a.getId()) {
+            if (runner == entry) return false;
+            runner = idom[runner];
+        }
+        return true;
+    }
+
+    public List<Instruction> getChildren(Instruction inst) {
+        return children.getOrDefault(inst.getId(), List.of());
+    }
+
+    public Set<Instruction> getFrontier(Instruction inst) {
+        return frontier.getOrDefault(inst.getId(), Set.of());
+    }
+
+    public List<Instruction> getReversePostorder() {
+        return reversePostorder;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // buildCFG adds the edges again every time it runs, so the neighbours are deduplicated here
+    public static List<Instruction> successors(Instruction inst) {
+        return distinctInstructions(inst.getSuccessors());
+    }
+
+    public static List<Instruction> predecessors(Instruction inst) {
+        return distinctInstructions(inst.getPredecessors());
+    }
+
+    private static List<Instruction> distinctInstructions(List<Node> nodes) {
+        List<Instruction> res = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (node instanceof Instruction inst && !res.contains(inst)) {
+                res.add(inst);
+            }
+        }
+        return res;
+    }
+}
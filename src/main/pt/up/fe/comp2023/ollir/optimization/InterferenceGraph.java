@@ -1,6 +1,7 @@
 package pt.up.fe.comp2023.ollir.optimization;
 
 import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 
 import java.util.*;
 
@@ -16,6 +17,8 @@ public class InterferenceGraph {
 
     private int registers;
     private  Map<String, String> config;
+    // Messages are kept until the caller prints them, so methods colored in parallel don't mix output
+    private final StringBuilder log = new StringBuilder();
 
     public InterferenceGraph(LivenessAnalysis liveness, int registers, Method method, Map<String, String> config) {
         this.liveness = liveness;
@@ -69,6 +72,18 @@ public class InterferenceGraph {
         return nodes;
     }
 
+    public String getLog() {
+        return log.toString();
+    }
+
+    public int getNumEdges() {
+        int degrees = 0;
+        for (InterferenceNode node : nodes) {
+            degrees += new HashSet<>(node.getEdges()).size();
+        }
+        return degrees / 2;
+    }
+
     public boolean colorGraph(Integer maxRegisters) {
         int numColors;
         int minColors = calculateMinimumRegisters();
@@ -80,7 +95,7 @@ public class InterferenceGraph {
         }
 
         if(numColors < minColors) {
-            System.out.println("Not enough colors to color the graph: " + " need at least " + minColors);
+            log.append("Not enough colors to color the graph: " + " need at least " + minColors).append("\n");
             return false;
         }
 
@@ -109,9 +124,10 @@ public class InterferenceGraph {
         }
 
         int numUsedColors = Arrays.stream(nodeColors).max().orElse(0);
+        CompilerMetrics.count("colors", numUsedColors);
 
         if(config.getOrDefault("debug", "false").equals("true")) {
-            System.out.println("Number of colors used: " + numUsedColors);
+            log.append("Number of colors used: " + numUsedColors).append("\n");
         }
         Map<Integer, List<InterferenceNode>> colorMap = new HashMap<>();
         for (int i = 0; i < nodeColors.length; i++) {
@@ -123,7 +139,7 @@ public class InterferenceGraph {
             List<InterferenceNode> nodesForColor = colorMap.getOrDefault(color, Collections.emptyList());
             for(int i = 0; i < nodesForColor.size(); i++) {
                 if(config.getOrDefault("debug", "false").equals("true")) {
-                    System.out.println("Nodes with color " + color + ": " + nodesForColor.get(i).getVar());
+                    log.append("Nodes with color " + color + ": " + nodesForColor.get(i).getVar()).append("\n");
                 }
                 InterferenceNode no = this.getNode(nodesForColor.get(i).getVar());
                 no.setRegister(color);
@@ -22,6 +22,8 @@ public class LivenessAnalysis {
 
     private final List<Instruction> instructionList;
 
+    private int iterations = 0;
+
     public LivenessAnalysis(Method method) {
         this.def = new HashMap<>();
         this.use = new HashMap<>();
@@ -43,6 +45,7 @@ public class LivenessAnalysis {
         int numInst = instructionList.size();
         boolean changes;
         do {
+            iterations++;
             changes = false;
             for (int i = numInst - 1; i >= 0; i--) {
                 Instruction inst = instructionList.get(i);
@@ -61,6 +64,10 @@ public class LivenessAnalysis {
         this.findVariables();
     }
 
+    public int getIterations() {
+        return iterations;
+    }
+
     public HashSet<String> calcIn(Instruction inst) {
         int instId = inst.getId();
         HashSet<String> res = new HashSet<>(this.use.get(instId));
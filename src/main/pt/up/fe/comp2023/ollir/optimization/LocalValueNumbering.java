@@ -0,0 +1,193 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Value numbering inside each basic block: an operation or array load that computes a value already held
+// by a local becomes a copy of that local. Operands are numbered by how many times their variable was
+// assigned, so an expression only matches while none of its operands, nor the local holding it, changed.
+// Array loads are forgotten on every array store, call and putfield, as any of them may change the array.
+// Later reads of a copy in the same block read the original local instead, leaving the copy to dead code
+// elimination
+public class LocalValueNumbering {
+    private final Method method;
+
+    private final HashMap<String, Integer> versions = new HashMap<>();
+
+    private final HashMap<String, Value> values = new HashMap<>();
+
+    private final HashMap<String, Value> loads = new HashMap<>();
+
+    private final HashMap<String, Value> copies = new HashMap<>();
+
+    private int blocks = 0;
+
+    private int replaced = 0;
+
+    private int propagated = 0;
+
+    private static class Value {
+        private final Operand holder;
+        private final int version;
+
+        private Value(Operand holder, int version) {
+            this.holder = holder;
+            this.version = version;
+        }
+    }
+
+    public LocalValueNumbering(Method method) {
+        this.method = method;
+    }
+
+    public void optimize() {
+        if (method.getInstructions().isEmpty()) return;
+        Set<Instruction> leaders = new HashSet<>(method.getLabels().values());
+        HashMap<Instruction, Instruction> replacements = new HashMap<>();
+
+        Instruction previous = null;
+        for (Instruction inst : method.getInstructions()) {
+            if (previous == null || leaders.contains(inst) || endsBlock(previous)) {
+                values.clear();
+                loads.clear();
+                copies.clear();
+                blocks++;
+            }
+            previous = inst;
+            propagateCopies(inst);
+
+            if (inst instanceof AssignInstruction assign) {
+                Instruction copy = number(assign);
+                if (copy != null) replacements.put(inst, copy);
+            } else if (inst.getInstType() == InstructionType.CALL || inst.getInstType() == InstructionType.PUTFIELD) {
+                loads.clear();
+            }
+        }
+
+        for (Map.Entry<Instruction, Instruction> replacement : replacements.entrySet()) {
+            ControlFlow.replace(method, replacement.getKey(), replacement.getValue());
+        }
+        replaced = replacements.size();
+        ControlFlow.rebuild(method);
+    }
+
+    private static boolean endsBlock(Instruction inst) {
+        return switch (inst.getInstType()) {
+            case BRANCH, GOTO, RETURN -> true;
+            default -> false;
+        };
+    }
+
+    // Returns the copy replacing the assignment, or null if it stays
+    private Instruction number(AssignInstruction assign) {
+        Instruction rhs = assign.getRhs();
+        if (rhs.getInstType() == InstructionType.CALL) {
+            loads.clear();
+        }
+        if (assign.getDest() instanceof ArrayOperand) {
+            loads.clear();
+            return null;
+        }
+        Operand dest = (Operand) assign.getDest();
+
+        String key = key(rhs);
+        HashMap<String, Value> table = isLoad(rhs) ? loads : values;
+        Value known = key == null ? null : table.get(key);
+        Instruction copy = null;
+        if (known != null && version(known.holder.getName()) == known.version) {
+            copy = new AssignInstruction(dest, assign.getTypeOfAssign(),
+                    new SingleOpInstruction(new Operand(known.holder.getName(), known.holder.getType())));
+        }
+
+        versions.merge(dest.getName(), 1, Integer::sum);
+        copies.remove(dest.getName());
+        if (copy != null) {
+            copies.put(dest.getName(), known);
+        }
+        // A value is only kept in locals, parameters and fields aren't worth the copy
+        Descriptor descriptor = method.getVarTable().get(dest.getName());
+        if (key != null && copy == null && descriptor != null && descriptor.getScope() == VarScope.LOCAL) {
+            table.put(key, new Value(dest, version(dest.getName())));
+        }
+        return copy;
+    }
+
+    private void propagateCopies(Instruction inst) {
+        for (Operand use : SsaForm.uses(inst)) {
+            Value original = copies.get(use.getName());
+            if (original != null && version(original.holder.getName()) == original.version) {
+                use.setName(original.holder.getName());
+                propagated++;
+            }
+        }
+    }
+
+    private int version(String name) {
+        return versions.getOrDefault(name, 0);
+    }
+
+    private static boolean isLoad(Instruction rhs) {
+        return rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand;
+    }
+
+    // Key of the value computed, or null when it isn't numbered
+    private String key(Instruction rhs) {
+        switch (rhs.getInstType()) {
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                OperationType op = binaryOp.getOperation().getOpType();
+                String left = key(binaryOp.getLeftOperand());
+                String right = key(binaryOp.getRightOperand());
+                if (isCommutative(op) && left.compareTo(right) > 0) {
+                    String tmp = left;
+                    left = right;
+                    right = tmp;
+                }
+                return op + "(" + left + "," + right + ")";
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) rhs;
+                return unaryOp.getOperation().getOpType() + "(" + key(unaryOp.getOperand()) + ")";
+            }
+            case NOPER -> {
+                if (!(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand array)) return null;
+                StringBuilder key = new StringBuilder(key(array));
+                for (Element index : array.getIndexOperands()) {
+                    key.append("[").append(key(index)).append("]");
+                }
+                return key.toString();
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private String key(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + "." + literal.getType().getTypeOfElement();
+        }
+        String name = ((Operand) element).getName();
+        return name + SsaForm.SEPARATOR + version(name);
+    }
+
+    private static boolean isCommutative(OperationType op) {
+        return switch (op) {
+            case ADD, MUL, AND, OR, XOR, EQ, NEQ, ANDB, ORB -> true;
+            default -> false;
+        };
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    public int getReplaced() {
+        return replaced;
+    }
+
+    public int getPropagated() {
+        return propagated;
+    }
+}
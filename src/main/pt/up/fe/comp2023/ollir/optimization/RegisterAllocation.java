@@ -4,9 +4,12 @@ import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public class RegisterAllocation {
     private final int numRegisters;
@@ -23,19 +26,73 @@ public class RegisterAllocation {
         this.config = config;
     }
 
+    // Outcome of allocating the registers of one method
+    private record MethodAllocation(Method method, boolean colored, String log, CompilerMetrics metrics) {
+    }
+
     public void regAlloc() {
         ArrayList<Method> methods = ollirClass.getMethods();
         ollirClass.buildCFGs();
-        for (Method method : methods) {
+
+        // Methods only touch their own var table, so they can be allocated in any order. Results are
+        // handled in declaration order, so reports and output don't depend on scheduling
+        boolean recordMetrics = CompilerMetrics.isEnabled();
+        boolean parallel = config.getOrDefault("parallel", "false").equals("true");
+        Stream<Method> methodStream = parallel ? methods.parallelStream() : methods.stream();
+        List<MethodAllocation> allocations = methodStream.map(method -> allocate(method, recordMetrics)).toList();
+
+        boolean debug = config.getOrDefault("debug", "false").equals("true");
+        for (MethodAllocation allocation : allocations) {
+            CompilerMetrics.merge(allocation.metrics());
+            System.out.print(allocation.log());
+            if (!allocation.colored()) {
+                ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION, 0, 0,
+                        "Not enough registers provided in input for method " + allocation.method().getMethodName(), null));
+                // Debug mode reports every method that doesn't fit
+                if (!debug) return;
+            }
+        }
+    }
+
+    private MethodAllocation allocate(Method method, boolean recordMetrics) {
+        // Metrics are per thread, so each method records its own and regAlloc adds them up
+        CompilerMetrics previous = CompilerMetrics.current();
+        CompilerMetrics metrics = recordMetrics ? CompilerMetrics.start() : null;
+        try {
+            // Splitting every variable into its webs gives the graph smaller live ranges to color
+            CompilerMetrics.Phase ssaPhase = CompilerMetrics.phase("ssa");
+            try {
+                SsaForm ssa = new SsaForm(method);
+                ssa.build();
+                CompilerMetrics.count("phis", ssa.getPhiCount());
+                CompilerMetrics.count("versions", ssa.getVersionCount());
+                ssa.destruct();
+                CompilerMetrics.count("webs", ssa.getWebCount());
+            } finally {
+                ssaPhase.close();
+            }
             Map<String, Descriptor> varTable = method.getVarTable();
             LivenessAnalysis liveAnalysis = new LivenessAnalysis(method);
-            liveAnalysis.analyse();
+            CompilerMetrics.Phase livenessPhase = CompilerMetrics.phase("liveness");
+            try {
+                liveAnalysis.analyse();
+                CompilerMetrics.count("instructions", method.getInstructions().size());
+                CompilerMetrics.count("fixpointIterations", liveAnalysis.getIterations());
+            } finally {
+                livenessPhase.close();
+            }
             InterferenceGraph graph = new InterferenceGraph(liveAnalysis, numRegisters, method, config);
-            graph.buildGraph();
-            if(!graph.colorGraph(numRegisters)) {
-                ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION,0,0,"Not enough registers provided in input",null));
-                return;
-            };
+            CompilerMetrics.Phase graphPhase = CompilerMetrics.phase("interferenceGraph");
+            try {
+                graph.buildGraph();
+                CompilerMetrics.count("nodes", graph.getNodes().size());
+                CompilerMetrics.count("edges", graph.getNumEdges());
+                if(!graph.colorGraph(numRegisters)) {
+                    return new MethodAllocation(method, false, graph.getLog(), metrics);
+                }
+            } finally {
+                graphPhase.close();
+            }
 
             int regOffset = method.isStaticMethod() ? 0 : 1;
             regOffset += method.getParams().size();
@@ -44,8 +101,9 @@ public class RegisterAllocation {
                 if(!(varTable.get(node.getVar()).getScope().equals(VarScope.PARAMETER) || varTable.get(node.getVar()).getVarType().getTypeOfElement().equals(ElementType.THIS)))
                     varTable.get(node.getVar()).setVirtualReg(node.getRegister() + regOffset - 1);
             }
+            return new MethodAllocation(method, true, graph.getLog(), metrics);
+        } finally {
+            CompilerMetrics.set(previous);
         }
-
-        int a = 2;
     }
 }
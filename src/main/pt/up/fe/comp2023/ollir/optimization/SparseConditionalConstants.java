@@ -0,0 +1,395 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Sparse conditional constant propagation (Wegman and Zadeck) over the SSA form of a method. Values flow
+// along SSA names, and only the CFG edges a branch can actually take become executable, so constants
+// that only hold because a branch is never taken are still found. Afterwards uses of constants become
+// literals, branches on constant conditions become gotos or disappear, and code that can't be reached
+// is removed. The CFG must be built before and is rebuilt after.
+public class SparseConditionalConstants {
+    private static final String OVERDEFINED = "overdefined";
+
+    private final Method method;
+
+    private final SsaForm ssa;
+
+    private final List<Instruction> instructionList;
+
+    private final HashMap<Instruction, Integer> positions;
+
+    // Lattice value of every SSA name: absent while undefined, a literal, or overdefined
+    private final HashMap<String, String> values;
+
+    private final Set<Instruction> executable;
+
+    private final Set<Long> executableEdges;
+
+    // Instructions that read each SSA name, in an operand or in one of their phis
+    private final HashMap<String, List<Instruction>> users;
+
+    private final Deque<long[]> flowWorklist;
+
+    private final Deque<Instruction> ssaWorklist;
+
+    private int iterations = 0;
+
+    private int rewrites = 0;
+
+    private int foldedBranches = 0;
+
+    private int removedInstructions = 0;
+
+    public SparseConditionalConstants(Method method) {
+        this.method = method;
+        this.ssa = new SsaForm(method);
+        this.instructionList = method.getInstructions();
+        this.positions = new HashMap<>();
+        for (int i = 0; i < instructionList.size(); i++) {
+            positions.put(instructionList.get(i), i);
+        }
+        this.values = new HashMap<>();
+        this.executable = new HashSet<>();
+        this.executableEdges = new HashSet<>();
+        this.users = new HashMap<>();
+        this.flowWorklist = new ArrayDeque<>();
+        this.ssaWorklist = new ArrayDeque<>();
+    }
+
+    public void optimize() {
+        if (instructionList.isEmpty()) return;
+        ssa.build();
+        analyse();
+
+        HashMap<Instruction, String> decisions = new HashMap<>();
+        for (Instruction inst : instructionList) {
+            if (executable.contains(inst) && inst instanceof CondBranchInstruction branch) {
+                String condition = evaluate(branch.getCondition());
+                if (condition != null && !condition.equals(OVERDEFINED)) {
+                    decisions.put(inst, condition);
+                }
+            }
+        }
+        for (Instruction inst : instructionList) {
+            if (executable.contains(inst)) {
+                rewrites += rewrite(inst);
+            }
+        }
+        ssa.restoreNames();
+        prune(decisions);
+        ControlFlow.rebuild(method);
+    }
+
+    private void analyse() {
+        for (Instruction inst : instructionList) {
+            for (Operand use : SsaForm.uses(inst)) {
+                users.computeIfAbsent(use.getName(), k -> new ArrayList<>()).add(inst);
+            }
+            for (SsaForm.Phi phi : ssa.getPhis(inst)) {
+                for (String arg : phi.getArgs().values()) {
+                    users.computeIfAbsent(arg, k -> new ArrayList<>()).add(inst);
+                }
+            }
+        }
+
+        flowWorklist.add(new long[]{SsaForm.METHOD_START, instructionList.get(0).getId()});
+        while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            iterations++;
+            if (!flowWorklist.isEmpty()) {
+                long[] edge = flowWorklist.poll();
+                if (!executableEdges.add(edgeKey(edge[0], edge[1]))) continue;
+                Instruction inst = instructionList.get(positionOf((int) edge[1]));
+                evaluatePhis(inst);
+                if (executable.add(inst)) {
+                    visit(inst);
+                }
+            } else {
+                Instruction inst = ssaWorklist.poll();
+                if (executable.contains(inst)) {
+                    evaluatePhis(inst);
+                    visit(inst);
+                }
+            }
+        }
+    }
+
+    private int positionOf(int id) {
+        // buildCFG numbers the instructions in order, starting at 1
+        return id - 1;
+    }
+
+    private long edgeKey(long from, long to) {
+        return from * (instructionList.size() + 1) + to;
+    }
+
+    private void addEdge(Instruction from, Instruction to) {
+        if (to != null && !executableEdges.contains(edgeKey(from.getId(), to.getId()))) {
+            flowWorklist.add(new long[]{from.getId(), to.getId()});
+        }
+    }
+
+    private void evaluatePhis(Instruction inst) {
+        for (SsaForm.Phi phi : ssa.getPhis(inst)) {
+            String res = null;
+            for (Map.Entry<Integer, String> arg : phi.getArgs().entrySet()) {
+                if (!executableEdges.contains(edgeKey(arg.getKey(), inst.getId()))) continue;
+                String value = valueOf(arg.getValue());
+                if (value == null) continue;
+                res = res == null || res.equals(value) ? value : OVERDEFINED;
+            }
+            setValue(phi.getDest(), res);
+        }
+    }
+
+    private void visit(Instruction inst) {
+        Integer position = positions.get(inst);
+        Instruction next = position + 1 < instructionList.size() ? instructionList.get(position + 1) : null;
+        switch (inst.getInstType()) {
+            case ASSIGN -> {
+                Element dest = ((AssignInstruction) inst).getDest();
+                if (!(dest instanceof ArrayOperand) && dest instanceof Operand operand
+                        && ssa.getOriginal(operand.getName()) != null) {
+                    setValue(operand.getName(), evaluate(((AssignInstruction) inst).getRhs()));
+                }
+                addEdge(inst, next);
+            }
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) inst;
+                String condition = evaluate(branch.getCondition());
+                Instruction target = method.getLabels().get(branch.getLabel());
+                // An undefined condition reads a variable nothing assigned, both ways stay possible
+                if (condition == null || condition.equals(OVERDEFINED)) {
+                    addEdge(inst, target);
+                    addEdge(inst, next);
+                } else if (condition.equals("0")) {
+                    addEdge(inst, next);
+                } else {
+                    addEdge(inst, target);
+                }
+            }
+            case GOTO -> addEdge(inst, method.getLabels().get(((GotoInstruction) inst).getLabel()));
+            case RETURN -> {
+            }
+            default -> addEdge(inst, next);
+        }
+    }
+
+    private void setValue(String name, String value) {
+        String old = values.get(name);
+        if (Objects.equals(old, value) || OVERDEFINED.equals(old) || value == null) return;
+        if (old != null && !old.equals(value)) {
+            value = OVERDEFINED;
+        }
+        values.put(name, value);
+        ssaWorklist.addAll(users.getOrDefault(name, List.of()));
+    }
+
+    // Value of an SSA name. Variables read before any assignment are undefined
+    private String valueOf(String name) {
+        return values.get(name);
+    }
+
+    private String valueOf(Element element) {
+        if (element.isLiteral()) {
+            return ((LiteralElement) element).getLiteral();
+        }
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand) {
+            return OVERDEFINED;
+        }
+        if (ssa.getOriginal(operand.getName()) != null) {
+            return values.get(operand.getName());
+        }
+        ElementType type = element.getType().getTypeOfElement();
+        if (ssa.isTracked(operand) && (type == ElementType.INT32 || type == ElementType.BOOLEAN)) {
+            return null;
+        }
+        return OVERDEFINED;
+    }
+
+    // Returns null when an operand is still undefined, which keeps the result undefined too
+    private String evaluate(Instruction rhs) {
+        switch (rhs.getInstType()) {
+            case NOPER -> {
+                return valueOf(((SingleOpInstruction) rhs).getSingleOperand());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) rhs;
+                String operand = valueOf(unaryOp.getOperand());
+                if (operand == null || operand.equals(OVERDEFINED)) return operand;
+                OperationType opType = unaryOp.getOperation().getOpType();
+                if (opType == OperationType.NOTB || opType == OperationType.NOT) {
+                    return operand.equals("0") ? "1" : "0";
+                }
+                return OVERDEFINED;
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                String left = valueOf(binaryOp.getLeftOperand());
+                String right = valueOf(binaryOp.getRightOperand());
+                if (OVERDEFINED.equals(left) || OVERDEFINED.equals(right)) return OVERDEFINED;
+                if (left == null || right == null) return null;
+                return fold(binaryOp.getOperation().getOpType(), Integer.parseInt(left), Integer.parseInt(right));
+            }
+            default -> {
+                return OVERDEFINED;
+            }
+        }
+    }
+
+    private String fold(OperationType opType, int left, int right) {
+        return switch (opType) {
+            case ADD -> String.valueOf(left + right);
+            case SUB -> String.valueOf(left - right);
+            case MUL -> String.valueOf(left * right);
+            // Division by zero has to throw at run time
+            case DIV -> right == 0 ? OVERDEFINED : String.valueOf(left / right);
+            case LTH -> bool(left < right);
+            case GTH -> bool(left > right);
+            case LTE -> bool(left <= right);
+            case GTE -> bool(left >= right);
+            case EQ -> bool(left == right);
+            case NEQ -> bool(left != right);
+            case AND, ANDB -> bool(left != 0 && right != 0);
+            case OR, ORB -> bool(left != 0 || right != 0);
+            default -> OVERDEFINED;
+        };
+    }
+
+    private String bool(boolean value) {
+        return value ? "1" : "0";
+    }
+
+    private int rewrite(Instruction operands) {
+        int rewrites = 0;
+        switch (operands.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) operands;
+                if (assign.getDest() instanceof ArrayOperand arrayDest) {
+                    rewrites += rewriteAll(arrayDest.getIndexOperands());
+                }
+                rewrites += rewrite(assign.getRhs());
+            }
+            case NOPER -> {
+                SingleOpInstruction singleOp = (SingleOpInstruction) operands;
+                Element operand = singleOp.getSingleOperand();
+                Element literal = literalFor(operand);
+                if (literal != null) {
+                    singleOp.setSingleOperand(literal);
+                    rewrites++;
+                } else if (operand instanceof ArrayOperand arrayOperand) {
+                    rewrites += rewriteAll(arrayOperand.getIndexOperands());
+                }
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) operands;
+                Element literal = literalFor(unaryOp.getOperand());
+                if (literal != null) {
+                    unaryOp.setOperand(literal);
+                    rewrites++;
+                }
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) operands;
+                Element left = literalFor(binaryOp.getLeftOperand());
+                if (left != null) {
+                    binaryOp.setLeftOperand(left);
+                    rewrites++;
+                }
+                Element right = literalFor(binaryOp.getRightOperand());
+                if (right != null) {
+                    binaryOp.setRightOperand(right);
+                    rewrites++;
+                }
+            }
+            case BRANCH -> rewrites += rewrite(((CondBranchInstruction) operands).getCondition());
+            case CALL -> {
+                ArrayList<Element> args = ((CallInstruction) operands).getListOfOperands();
+                if (args != null) {
+                    rewrites += rewriteAll(args);
+                }
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) operands;
+                Element literal = ret.hasReturnValue() ? literalFor(ret.getOperand()) : null;
+                if (literal != null) {
+                    ret.setOperand(literal);
+                    rewrites++;
+                }
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) operands;
+                Element literal = literalFor(putField.getThirdOperand());
+                if (literal != null) {
+                    putField.setThirdOperand(literal);
+                    rewrites++;
+                }
+            }
+        }
+        return rewrites;
+    }
+
+    private int rewriteAll(List<Element> elements) {
+        int rewrites = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            Element literal = literalFor(elements.get(i));
+            if (literal != null) {
+                elements.set(i, literal);
+                rewrites++;
+            }
+        }
+        return rewrites;
+    }
+
+    private Element literalFor(Element element) {
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand) {
+            return null;
+        }
+        if (ssa.getOriginal(operand.getName()) == null) {
+            return null;
+        }
+        String value = values.get(operand.getName());
+        if (value == null || value.equals(OVERDEFINED)) {
+            return null;
+        }
+        return new LiteralElement(value, element.getType());
+    }
+
+    // Branches that always go the same way become gotos or disappear, then what they skipped goes
+    private void prune(HashMap<Instruction, String> decisions) {
+        Set<Instruction> removed = new HashSet<>();
+        for (Instruction inst : List.copyOf(instructionList)) {
+            if (!executable.contains(inst)) {
+                removed.add(inst);
+                continue;
+            }
+            String condition = decisions.get(inst);
+            if (condition == null) continue;
+            foldedBranches++;
+            if (condition.equals("0")) {
+                removed.add(inst);
+            } else {
+                ControlFlow.replace(method, inst, new GotoInstruction(((CondBranchInstruction) inst).getLabel()));
+            }
+        }
+        removedInstructions = removed.size();
+        ControlFlow.remove(method, removed);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getRewrites() {
+        return rewrites;
+    }
+
+    public int getFoldedBranches() {
+        return foldedBranches;
+    }
+
+    public int getRemovedInstructions() {
+        return removedInstructions;
+    }
+}
@@ -0,0 +1,377 @@
+package pt.up.fe.comp2023.ollir.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+// Static single assignment form of a method. Phi nodes are placed on the iterated dominance frontiers
+// of the definitions of every local, and the operands are renamed in place, so every local is assigned
+// exactly once. OLLIR has no phi instruction, so the phis are kept here, attached to the instruction
+// they come before. Versions are named var#k, which no Java-- identifier can clash with.
+public class SsaForm {
+    public static final String SEPARATOR = "#";
+
+    // Phi arguments coming from the start of the method, for phis on the first instruction
+    public static final int METHOD_START = 0;
+
+    private final Method method;
+
+    private final HashMap<String, Descriptor> varTable;
+
+    private final DominatorTree dominators;
+
+    private final HashMap<Integer, List<Phi>> phis;
+
+    // Original variable of every version
+    private final LinkedHashMap<String, String> versions;
+
+    private final List<Operand> renamed;
+
+    // Next suffix to try for every variable, so naming stays linear in the number of versions
+    private final HashMap<String, Integer> suffixes;
+
+    private int webs = 0;
+
+    public static class Phi {
+        private final String var;
+
+        private String dest;
+
+        private final LinkedHashMap<Integer, String> args = new LinkedHashMap<>();
+
+        public Phi(String var) {
+            this.var = var;
+        }
+
+        public String getVar() {
+            return var;
+        }
+
+        public String getDest() {
+            return dest;
+        }
+
+        // Version coming from each predecessor, by instruction id
+        public Map<Integer, String> getArgs() {
+            return args;
+        }
+
+        @Override
+        public String toString() {
+            return dest + " := phi(" + String.join(", ", args.values()) + ")";
+        }
+    }
+
+    public SsaForm(Method method) {
+        this.method = method;
+        this.varTable = method.getVarTable();
+        this.dominators = new DominatorTree(method);
+        this.phis = new HashMap<>();
+        this.versions = new LinkedHashMap<>();
+        this.renamed = new ArrayList<>();
+        this.suffixes = new HashMap<>();
+    }
+
+    public void build() {
+        if (method.getInstructions().isEmpty()) return;
+        dominators.build();
+        insertPhis();
+        rename();
+    }
+
+    private void insertPhis() {
+        LinkedHashMap<String, Set<Instruction>> defSites = new LinkedHashMap<>();
+        for (Instruction inst : dominators.getReversePostorder()) {
+            String var = definedVar(inst);
+            if (var != null) {
+                defSites.computeIfAbsent(var, k -> new LinkedHashSet<>()).add(inst);
+            }
+        }
+
+        for (Map.Entry<String, Set<Instruction>> entry : defSites.entrySet()) {
+            String var = entry.getKey();
+            Set<Instruction> hasPhi = new HashSet<>();
+            Deque<Instruction> worklist = new ArrayDeque<>(entry.getValue());
+            Set<Instruction> queued = new HashSet<>(entry.getValue());
+            while (!worklist.isEmpty()) {
+                Instruction inst = worklist.poll();
+                for (Instruction join : dominators.getFrontier(inst)) {
+                    if (!hasPhi.add(join)) continue;
+                    phis.computeIfAbsent(join.getId(), k -> new ArrayList<>()).add(new Phi(var));
+                    if (queued.add(join)) {
+                        worklist.add(join);
+                    }
+                }
+            }
+        }
+    }
+
+    // Walks the dominator tree keeping the current version of every variable on a stack
+    private void rename() {
+        HashMap<String, Deque<String>> current = new HashMap<>();
+        Instruction entry = dominators.getEntry();
+        for (Phi phi : getPhis(entry)) {
+            phi.args.put(METHOD_START, phi.var);
+        }
+
+        Deque<Instruction> stack = new ArrayDeque<>();
+        Deque<List<String>> pushed = new ArrayDeque<>();
+        stack.push(entry);
+        Deque<Integer> childIndex = new ArrayDeque<>();
+        childIndex.push(0);
+        pushed.push(renameInstruction(entry, current));
+        while (!stack.isEmpty()) {
+            Instruction inst = stack.peek();
+            int next = childIndex.pop();
+            List<Instruction> children = dominators.getChildren(inst);
+            if (next < children.size()) {
+                childIndex.push(next + 1);
+                Instruction child = children.get(next);
+                stack.push(child);
+                childIndex.push(0);
+                pushed.push(renameInstruction(child, current));
+            } else {
+                stack.pop();
+                for (String var : pushed.pop()) {
+                    current.get(var).pop();
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+            Descriptor original = varTable.get(version.getValue());
+            varTable.put(version.getKey(), new Descriptor(VarScope.LOCAL, original.getVirtualReg(), original.getVarType()));
+        }
+    }
+
+    // Renames the phis, uses and definition of one instruction and fills the phis of its successors.
+    // Returns the variables that got a new version, to be popped once the subtree is done
+    private List<String> renameInstruction(Instruction inst, HashMap<String, Deque<String>> current) {
+        List<String> pushed = new ArrayList<>();
+        for (Phi phi : getPhis(inst)) {
+            phi.dest = newVersion(phi.var, current);
+            pushed.add(phi.var);
+        }
+
+        for (Operand use : uses(inst)) {
+            if (!isTracked(use)) continue;
+            Deque<String> stack = current.get(use.getName());
+            if (stack != null && !stack.isEmpty()) {
+                use.setName(stack.peek());
+            }
+            renamed.add(use);
+        }
+
+        String var = definedVar(inst);
+        if (var != null) {
+            Operand dest = (Operand) ((AssignInstruction) inst).getDest();
+            dest.setName(newVersion(var, current));
+            renamed.add(dest);
+            pushed.add(var);
+        }
+
+        for (Instruction succ : DominatorTree.successors(inst)) {
+            for (Phi phi : getPhis(succ)) {
+                Deque<String> stack = current.get(phi.var);
+                phi.args.put(inst.getId(), stack != null && !stack.isEmpty() ? stack.peek() : phi.var);
+            }
+        }
+        return pushed;
+    }
+
+    private String newVersion(String var, HashMap<String, Deque<String>> current) {
+        String version = freshName(var);
+        versions.put(version, var);
+        current.computeIfAbsent(var, k -> new ArrayDeque<>()).push(version);
+        return version;
+    }
+
+    private String freshName(String var) {
+        int k = suffixes.getOrDefault(var, 1);
+        while (varTable.containsKey(var + SEPARATOR + k) || versions.containsKey(var + SEPARATOR + k)) k++;
+        suffixes.put(var, k + 1);
+        return var + SEPARATOR + k;
+    }
+
+    // Leaves SSA by giving every web, the versions tied together by phis, a name of its own. The phis
+    // are dropped without copies: nothing moves code across them, so the versions of a web never
+    // overlap. Variables reused for unrelated values end up split, which RegisterAllocation can color
+    // separately.
+    public void destruct() {
+        HashMap<String, String> parent = new HashMap<>();
+        for (List<Phi> instPhis : phis.values()) {
+            for (Phi phi : instPhis) {
+                for (String arg : phi.args.values()) {
+                    union(parent, phi.dest, arg);
+                }
+            }
+        }
+
+        // The web holding the value from the start of the method keeps the original name, then the webs
+        // are named in the order their first version was created
+        LinkedHashMap<String, String> webNames = new LinkedHashMap<>();
+        HashSet<String> namedVars = new HashSet<>();
+        for (String var : new LinkedHashSet<>(versions.values())) {
+            if (parent.containsKey(var)) {
+                webNames.put(find(parent, var), var);
+                namedVars.add(var);
+            }
+        }
+        for (String version : versions.keySet()) {
+            varTable.remove(version);
+        }
+        int nextReg = 0;
+        for (Descriptor descriptor : varTable.values()) {
+            nextReg = Math.max(nextReg, descriptor.getVirtualReg() + 1);
+        }
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+            String root = find(parent, version.getKey());
+            if (webNames.containsKey(root)) continue;
+            String var = version.getValue();
+            if (namedVars.add(var)) {
+                webNames.put(root, var);
+                continue;
+            }
+            String name = freshName(var);
+            Descriptor original = varTable.get(var);
+            varTable.put(name, new Descriptor(VarScope.LOCAL, nextReg++, original.getVarType()));
+            webNames.put(root, name);
+        }
+        webs = webNames.size();
+
+        for (Operand operand : renamed) {
+            String root = find(parent, operand.getName());
+            operand.setName(webNames.getOrDefault(root, operand.getName()));
+        }
+        phis.clear();
+        versions.clear();
+        renamed.clear();
+    }
+
+    // Leaves SSA by giving every version the name of its variable back, which is always valid while
+    // no code has moved. Used when splitting the webs would only cost more registers
+    public void restoreNames() {
+        for (Operand operand : renamed) {
+            operand.setName(versions.getOrDefault(operand.getName(), operand.getName()));
+        }
+        for (String version : versions.keySet()) {
+            varTable.remove(version);
+        }
+        phis.clear();
+        versions.clear();
+        renamed.clear();
+    }
+
+    private static String find(HashMap<String, String> parent, String name) {
+        String root = name;
+        while (parent.containsKey(root) && !parent.get(root).equals(root)) {
+            root = parent.get(root);
+        }
+        // Path compression
+        while (!name.equals(root)) {
+            String next = parent.getOrDefault(name, root);
+            parent.put(name, root);
+            name = next;
+        }
+        return root;
+    }
+
+    private static void union(HashMap<String, String> parent, String a, String b) {
+        parent.putIfAbsent(a, a);
+        parent.putIfAbsent(b, b);
+        String rootA = find(parent, a);
+        String rootB = find(parent, b);
+        if (!rootA.equals(rootB)) {
+            parent.put(rootB, rootA);
+        }
+    }
+
+    private String definedVar(Instruction inst) {
+        if (inst.getInstType() != InstructionType.ASSIGN) return null;
+        Element dest = ((AssignInstruction) inst).getDest();
+        if (dest instanceof ArrayOperand || !(dest instanceof Operand operand) || !isTracked(operand)) return null;
+        return operand.getName();
+    }
+
+    // Locals only: parameters live in fixed registers and fields aren't in the var table
+    public boolean isTracked(Operand operand) {
+        Descriptor descriptor = varTable.get(operand.getName());
+        if (descriptor == null || descriptor.getScope() != VarScope.LOCAL) return false;
+        if (operand.getName().equals("this") || descriptor.getVarType().getTypeOfElement() == ElementType.THIS) return false;
+        // Class names are operands too, as the target of static calls
+        return operand.getType().getTypeOfElement() != ElementType.CLASS;
+    }
+
+    // Every operand read by the instruction, including the array of an array access
+    public static List<Operand> uses(Instruction inst) {
+        List<Operand> res = new ArrayList<>();
+        collectUses(inst, res);
+        return res;
+    }
+
+    private static void collectUses(Instruction inst, List<Operand> res) {
+        switch (inst.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) inst;
+                if (assign.getDest() instanceof ArrayOperand arrayDest) {
+                    addUse(arrayDest, res);
+                }
+                collectUses(assign.getRhs(), res);
+            }
+            case NOPER -> addUse(((SingleOpInstruction) inst).getSingleOperand(), res);
+            case UNARYOPER, BINARYOPER -> ((OpInstruction) inst).getOperands().forEach(op -> addUse(op, res));
+            case BRANCH -> collectUses(((CondBranchInstruction) inst).getCondition(), res);
+            case CALL -> {
+                CallInstruction call = (CallInstruction) inst;
+                addUse(call.getFirstArg(), res);
+                if (call.getListOfOperands() != null) {
+                    call.getListOfOperands().forEach(arg -> addUse(arg, res));
+                }
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) inst;
+                if (ret.hasReturnValue()) addUse(ret.getOperand(), res);
+            }
+            case GETFIELD -> addUse(((GetFieldInstruction) inst).getFirstOperand(), res);
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) inst;
+                addUse(putField.getFirstOperand(), res);
+                addUse(putField.getThirdOperand(), res);
+            }
+        }
+    }
+
+    private static void addUse(Element element, List<Operand> res) {
+        if (!(element instanceof Operand operand)) return;
+        res.add(operand);
+        if (operand instanceof ArrayOperand arrayOperand) {
+            arrayOperand.getIndexOperands().forEach(index -> addUse(index, res));
+        }
+    }
+
+    public List<Phi> getPhis(Instruction inst) {
+        return phis.getOrDefault(inst.getId(), List.of());
+    }
+
+    public int getPhiCount() {
+        return phis.values().stream().mapToInt(List::size).sum();
+    }
+
+    public int getVersionCount() {
+        return versions.size();
+    }
+
+    // Names given by the last destruct, counting the ones that kept the original name
+    public int getWebCount() {
+        return webs;
+    }
+
+    // Original variable of a version, or null if the name isn't a version
+    public String getOriginal(String name) {
+        return versions.get(name);
+    }
+
+    public DominatorTree getDominators() {
+        return dominators;
+    }
+}
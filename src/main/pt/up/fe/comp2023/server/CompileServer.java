@@ -0,0 +1,154 @@
+package pt.up.fe.comp2023.server;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.comp2023.ParserPool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps a warm compiler in a long-running JVM and serves compile requests over a local socket.
+//
+// A request is a list of key=value lines terminated by an empty line. It takes the same keys as the
+// Launcher config (inputFile, optimize, registerAllocation, debug, backend) plus an optional command
+// (compile, ping, stats, clearParserCache or shutdown). The response starts with "OK <class>" or "ERROR", followed by one
+// "REPORT <report>" line per report, an empty line and the Jasmin code, or the base64 encoded class
+// file with backend=classfile. The connection is closed after every response.
+public class CompileServer implements Closeable {
+    public static final int DEFAULT_PORT = 5123;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final JmmCompiler compiler;
+    private volatile boolean running;
+
+    public CompileServer(int port) throws IOException {
+        this(port, new JmmCompiler());
+    }
+
+    public CompileServer(int port, JmmCompiler compiler) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.compiler = compiler;
+        this.running = true;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void serve() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> handle(socket));
+            } catch (SocketException e) {
+                // Thrown by accept when the server is closed
+                break;
+            } catch (IOException e) {
+                System.err.println("Could not accept connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            Map<String, String> config = readRequest(in);
+            switch (config.getOrDefault("command", "compile")) {
+                case "ping" -> out.write("OK\n");
+                case "stats" -> out.write("OK\n" + (compiler.getCache() != null ? compiler.getCache().getStats() : "Cache disabled") + "\n");
+                case "clearParserCache" -> {
+                    ParserPool.clearCaches();
+                    out.write("OK\n");
+                }
+                case "shutdown" -> {
+                    out.write("OK\n");
+                    out.flush();
+                    close();
+                }
+                case "compile" -> writeResult(compile(config), out);
+                default -> out.write("ERROR\nREPORT Unknown command '" + config.get("command") + "'\n\n");
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Could not handle request: " + e.getMessage());
+        }
+    }
+
+    private Map<String, String> readRequest(BufferedReader in) throws IOException {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+        config.put("debug", "false");
+
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf('=');
+            if (separator == -1) {
+                config.put(line.trim(), "true");
+            } else {
+                config.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+            }
+        }
+        return config;
+    }
+
+    private CompilationResult compile(Map<String, String> config) {
+        File inputFile = new File(config.getOrDefault("inputFile", ""));
+        if (!inputFile.isFile()) {
+            return CompilationResult.failed(List.of(Report.newError(Stage.OTHER, -1, -1,
+                    "Expected a path to an existing input file, got '" + inputFile + "'.", null)));
+        }
+
+        long start = System.nanoTime();
+        CompilationResult result = compiler.compile(inputFile, config);
+        if (config.get("debug").equals("true")) {
+            System.out.println((result.isSuccess() ? "Compiled " : "Failed ") + inputFile + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return result;
+    }
+
+    private void writeResult(CompilationResult result, Writer out) throws IOException {
+        out.write(result.isSuccess() ? "OK " + result.getClassName() + "\n" : "ERROR\n");
+        for (Report report : result.getReports()) {
+            // Reports are line based, so multi-line messages are flattened
+            out.write("REPORT " + report.toString().replace('\n', ' ') + "\n");
+        }
+        out.write("\n");
+        if (result.isSuccess()) {
+            out.write(result.getClassFile() != null
+                    ? Base64.getEncoder().encodeToString(result.getClassFile()) + "\n"
+                    : result.getJasminCode());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        executor.shutdown();
+        serverSocket.close();
+    }
+}
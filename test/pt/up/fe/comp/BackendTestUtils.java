@@ -0,0 +1,77 @@
+package pt.up.fe.comp;
+
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.batch.BatchCompiler;
+import pt.up.fe.comp2023.generator.GeneratedProgram;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+// Programs that go through the Jasmin backend, and the check that a change to their OLLIR keeps what they print.
+// TestUtils comes with the course library, so these live next to the tests instead.
+public class BackendTestUtils {
+    public static final String JASMIN_DIR = "test/pt/up/fe/comp/cpf/4_jasmin";
+
+    // ArrayAsArg does not go through the Jasmin backend
+    public static List<File> jasminPrograms() {
+        return BatchCompiler.collectInputs(JASMIN_DIR).stream()
+                .filter(file -> !file.getName().equals("ArrayAsArg.jmm"))
+                .toList();
+    }
+
+    public static Map<String, String> optimizeConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        return config;
+    }
+
+    // OLLIR with every optimization on
+    public static OllirResult optimize(String code) {
+        return TestUtils.optimize(code, optimizeConfig());
+    }
+
+    // Jasmin code with every optimization on
+    public static String jasmin(String code) {
+        return new Jasmin().toJasmin(optimize(code)).getJasminCode();
+    }
+
+    // Unoptimized OLLIR with a pass applied to each method, for checking the pass on its own
+    public static Function<String, OllirResult> perMethod(Consumer<Method> pass) {
+        return code -> {
+            OllirResult result = TestUtils.optimize(code);
+            result.getOllirClass().buildCFGs();
+            result.getOllirClass().getMethods().forEach(pass);
+            return result;
+        };
+    }
+
+    public static String run(OllirResult result) {
+        return SpecsStrings.normalizeFileContents(new Jasmin().toJasmin(result).run());
+    }
+
+    // The Jasmin programs must print what they print unoptimized, and a few generated ones what they are expected to
+    public static void assertKeepsOutput(Function<String, OllirResult> compile) {
+        for (File file : jasminPrograms()) {
+            String code = SpecsIo.read(file);
+            assertEquals(file.getName(), run(TestUtils.optimize(code)), run(compile.apply(code)));
+        }
+        for (int seed = 0; seed < 4; seed++) {
+            assertKeepsOutput(compile, new ProgramGenerator(seed).methods(8).nesting(3).generate());
+        }
+    }
+
+    public static void assertKeepsOutput(Function<String, OllirResult> compile, GeneratedProgram program) {
+        assertEquals(program.getCode(), program.getExpectedOutput(), run(compile.apply(program.getCode())));
+    }
+}
@@ -0,0 +1,85 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.batch.BatchCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final String ARITHMETIC_DIR = "test/pt/up/fe/comp/cpf/4_jasmin/arithmetic";
+
+    private static final String CONTROL_FLOW_DIR = "test/pt/up/fe/comp/cpf/4_jasmin/control_flow";
+
+    @Test
+    public void collectsDirectoryAndGlob() {
+        List<File> fromDirectory = BatchCompiler.collectInputs(ARITHMETIC_DIR);
+        List<File> fromGlob = BatchCompiler.collectInputs(ARITHMETIC_DIR + "/*.jmm");
+
+        assertEquals(4, fromDirectory.size());
+        assertEquals(fromDirectory, fromGlob);
+    }
+
+    @Test
+    public void batchMatchesSingleCompilation() {
+        List<File> files = BatchCompiler.collectInputs(ARITHMETIC_DIR);
+        Map<File, CompilationResult> results = new BatchCompiler(4).compile(files, new HashMap<>());
+
+        assertEquals(files, new ArrayList<>(results.keySet()));
+        for (File file : files) {
+            CompilationResult result = results.get(file);
+            assertTrue("Could not compile " + file + ": " + result.getReports(), result.isSuccess());
+
+            String expected = TestUtils.backend(SpecsIo.read(file)).run();
+            assertEquals(SpecsStrings.normalizeFileContents(expected),
+                    SpecsStrings.normalizeFileContents(TestUtils.runJasmin(result.getJasminCode())));
+        }
+    }
+
+    private static List<String> messages(CompilationResult result) {
+        return result.getReports().stream().map(Report::getMessage).toList();
+    }
+
+    // Batch and single file compilation must run the same stages, each of them once, and report the same
+    @Test
+    public void batchMatchesLauncher() {
+        List<File> files = new ArrayList<>(BatchCompiler.collectInputs(ARITHMETIC_DIR));
+        files.addAll(BatchCompiler.collectInputs(CONTROL_FLOW_DIR));
+        for (String optimize : List.of("true", "false")) {
+            Map<String, String> config = new HashMap<>();
+            config.put("optimize", optimize);
+            config.put("registerAllocation", "0");
+            config.put("debug", "false");
+
+            Map<File, CompilationResult> results = new BatchCompiler(4).compile(files, config);
+            for (File file : files) {
+                CompilationResult single = Launcher.compileFile(file, null, config);
+                assertEquals(file + " optimize=" + optimize, single.getJasminCode(), results.get(file).getJasminCode());
+                assertEquals(messages(single), messages(results.get(file)));
+            }
+        }
+    }
+
+    @Test
+    public void reportsErrorsPerFile() {
+        File valid = new File(ARITHMETIC_DIR, "Arithmetic_and.jmm");
+        File invalid = new File("test/pt/up/fe/comp/cpf/2_semantic_analysis/lookup/VarLookup_Field_Main_Fail.jmm");
+
+        Map<File, CompilationResult> results = new BatchCompiler().compile(List.of(valid, invalid), new HashMap<>());
+
+        assertTrue(results.get(valid).isSuccess());
+        assertFalse(results.get(invalid).isSuccess());
+        assertFalse(results.get(invalid).getErrors().isEmpty());
+    }
+}
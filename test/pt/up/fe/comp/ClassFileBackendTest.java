@@ -0,0 +1,53 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.jasmin.classfile.ClassFileBackend;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ClassFileBackendTest {
+
+    // Both backends get the same OLLIR, so the programs must print the same
+    private static void assertSameOutput(File file, Map<String, String> config) {
+        OllirResult ollirResult = TestUtils.optimize(SpecsIo.read(file), config);
+
+        String expected = new Jasmin().toJasmin(ollirResult).run();
+        String output = new ClassFileBackend().toJasmin(ollirResult).run();
+
+        assertEquals("Output of " + file, SpecsStrings.normalizeFileContents(expected),
+                SpecsStrings.normalizeFileContents(output));
+    }
+
+    @Test
+    public void sameOutputAsJasmin() {
+        for (File file : BackendTestUtils.jasminPrograms()) {
+            assertSameOutput(file, new HashMap<>());
+        }
+    }
+
+    @Test
+    public void sameOutputAsJasminOptimized() {
+        for (File file : BackendTestUtils.jasminPrograms()) {
+            assertSameOutput(file, BackendTestUtils.optimizeConfig());
+        }
+    }
+
+    @Test
+    public void writesClassFile() {
+        File file = new File(BackendTestUtils.JASMIN_DIR + "/arithmetic/Arithmetic_and.jmm");
+        OllirResult ollirResult = TestUtils.optimize(SpecsIo.read(file));
+
+        File classFile = new ClassFileBackend().toJasmin(ollirResult).compile();
+
+        assertEquals(ollirResult.getOllirClass().getClassName() + ".class", classFile.getName());
+        assertTrue(classFile.isFile());
+    }
+}
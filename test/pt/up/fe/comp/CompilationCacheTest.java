@@ -0,0 +1,111 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompilationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(String name) {
+        return SpecsIo.read(new File("test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/" + name));
+    }
+
+    @Test
+    public void unchangedSourceIsServedFromCache() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        JmmCompiler compiler = new JmmCompiler(cache);
+        String code = read("Arithmetic_and.jmm");
+
+        CompilationResult first = compiler.compile(code, new HashMap<>());
+        CompilationResult second = compiler.compile(code, new HashMap<>());
+
+        assertTrue(first.isSuccess());
+        assertEquals(first.getJasminCode(), second.getJasminCode());
+        assertEquals(first.getOllirCode(), second.getOllirCode());
+        assertEquals(first.getRootNode().toTree(), second.getRootNode().toTree());
+        assertEquals(first.getSymbolTable().print(), second.getSymbolTable().print());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+
+        // A new cache over the same directory picks up the existing entries
+        CompilationCache reopened = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        assertNotNull(reopened.get(reopened.key(code, new HashMap<>())));
+    }
+
+    @Test
+    public void keyDependsOnEffectiveConfig() {
+        CompilationCache cache = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        String code = read("Arithmetic_and.jmm");
+
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", "a.jmm");
+        config.put("debug", "false");
+        Map<String, String> other = new HashMap<>();
+        other.put("inputFile", "b.jmm");
+        other.put("debug", "true");
+        Map<String, String> optimized = new HashMap<>(config);
+        optimized.put("optimize", "true");
+
+        assertEquals(cache.key(code, config), cache.key(code, other));
+        assertNotEquals(cache.key(code, config), cache.key(code, optimized));
+        assertNotEquals(cache.key(code, config), cache.key(code + " ", config));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        CompilationCache unbounded = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        JmmCompiler compiler = new JmmCompiler(unbounded);
+        String first = read("Arithmetic_and.jmm");
+        String second = read("Arithmetic_less.jmm");
+        compiler.compile(first, new HashMap<>());
+        long entryBytes = unbounded.getStats().getBytes();
+
+        // Only room for one entry
+        CompilationCache cache = new CompilationCache(folder.newFolder(), entryBytes + entryBytes / 2);
+        compiler = new JmmCompiler(cache);
+        compiler.compile(first, new HashMap<>());
+        compiler.compile(second, new HashMap<>());
+
+        assertEquals(1, cache.getStats().getEntries());
+        assertEquals(1, cache.getStats().getEvictions());
+        assertNull(cache.get(cache.key(first, new HashMap<>())));
+        assertNotNull(cache.get(cache.key(second, new HashMap<>())));
+    }
+
+    @Test
+    public void sharedDirectorySeesEntriesOfOtherCaches() {
+        String first = read("Arithmetic_and.jmm");
+        String second = read("Arithmetic_less.jmm");
+        CompilationCache writer = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+        CompilationCache reader = new CompilationCache(folder.getRoot(), CompilationCache.DEFAULT_MAX_BYTES);
+
+        new JmmCompiler(writer).compile(first, new HashMap<>());
+        long entryBytes = writer.getStats().getBytes();
+
+        assertNotNull(reader.get(reader.key(first, new HashMap<>())));
+        assertEquals(1, reader.getStats().getHits());
+        assertEquals(1, reader.getStats().getEntries());
+
+        // The limit covers the entry the other cache wrote
+        CompilationCache bounded = new CompilationCache(folder.getRoot(), entryBytes + entryBytes / 2);
+        new JmmCompiler(writer).compile(second, new HashMap<>());
+        new JmmCompiler(bounded).compile(first + " ", new HashMap<>());
+
+        assertEquals(1, bounded.getStats().getEntries());
+        assertEquals(1, folder.getRoot().list((dir, name) -> name.endsWith(".json")).length);
+    }
+}
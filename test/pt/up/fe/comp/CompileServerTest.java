@@ -0,0 +1,73 @@
+package pt.up.fe.comp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pt.up.fe.comp2023.server.CompileServer;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CompileServerTest {
+
+    private CompileServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new CompileServer(0);
+        new Thread(server::serve).start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    private String request(String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(request + "\n\n");
+            out.flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void ping() throws IOException {
+        assertEquals("OK\n", request("command=ping"));
+    }
+
+    @Test
+    public void clearParserCache() throws IOException {
+        assertEquals("OK\n", request("command=clearParserCache"));
+    }
+
+    @Test
+    public void compileReturnsJasmin() throws IOException {
+        File file = new File("test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm");
+        String response = request("inputFile=" + file.getAbsolutePath() + "\noptimize=true");
+
+        assertTrue(response, response.startsWith("OK "));
+        String jasmin = response.substring(response.indexOf("\n\n") + 2);
+        String expected = TestUtils.backend(SpecsIo.read(file)).run();
+        assertEquals(SpecsStrings.normalizeFileContents(expected),
+                SpecsStrings.normalizeFileContents(TestUtils.runJasmin(jasmin)));
+    }
+
+    @Test
+    public void compileReturnsReports() throws IOException {
+        File file = new File("test/pt/up/fe/comp/cpf/2_semantic_analysis/lookup/VarLookup_Field_Main_Fail.jmm");
+        String response = request("inputFile=" + file.getAbsolutePath());
+
+        assertTrue(response, response.startsWith("ERROR\nREPORT "));
+    }
+}
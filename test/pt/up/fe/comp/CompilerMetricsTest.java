@@ -0,0 +1,80 @@
+package pt.up.fe.comp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.comp2023.metrics.PhaseMetrics;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompilerMetricsTest {
+
+    @After
+    public void stopMetrics() {
+        CompilerMetrics.stop();
+    }
+
+    private static OllirResult compile(String path, Map<String, String> config) {
+        OllirResult ollirResult = TestUtils.optimize(SpecsIo.read(new File(path)), config);
+        new Jasmin().toJasmin(ollirResult);
+        return ollirResult;
+    }
+
+    @Test
+    public void recordsEveryPhase() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("registerAllocation", "0");
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        compile("test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm", config);
+        CompilerMetrics.stop();
+
+        assertTrue(metrics.getPhase("parse").getCounter("tokens") > 0);
+        assertTrue(metrics.getPhase("parse").getCounter("nodes") > 0);
+        assertNotNull(metrics.getPhase("symbolTable"));
+        assertTrue(metrics.getPhase("semantic").getCounter("nodesVisited") > 0);
+        assertTrue(metrics.getPhase("astOptimization").getCounter("fixpointIterations") >= 1);
+        assertNotNull(metrics.getPhase("constantFolding.round1"));
+        assertTrue(metrics.getPhase("constantPropagation").getCounter("worklistSteps") > 0);
+        assertTrue(metrics.getPhase("ollir").getCounter("ollirChars") > 0);
+        assertTrue(metrics.getPhase("liveness").getCounter("fixpointIterations") > 0);
+        assertTrue(metrics.getPhase("interferenceGraph").getCounter("nodes") > 0);
+        assertTrue(metrics.getPhase("jasmin").getCounter("instructions") > 0);
+
+        PhaseMetrics jasmin = metrics.getPhase("jasmin");
+        assertEquals(1, jasmin.getCalls());
+        assertTrue(jasmin.getWallTimeNanos() > 0);
+
+        JsonObject report = JsonParser.parseString(metrics.toJson()).getAsJsonObject();
+        assertEquals(metrics.getPhases().size(), report.getAsJsonArray("phases").size());
+    }
+
+    @Test
+    public void nothingIsRecordedWhenDisabled() {
+        CompilerMetrics.Phase phase = CompilerMetrics.phase("unused");
+        try {
+            CompilerMetrics.count("counter", 1);
+        } finally {
+            phase.close();
+        }
+        assertFalse(CompilerMetrics.isEnabled());
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        compile("test/pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm", new HashMap<>());
+
+        assertNull(metrics.getPhase("unused"));
+        // Not optimized, so there is no fixpoint
+        assertNull(metrics.getPhase("astOptimization"));
+        assertNull(metrics.getPhase("liveness"));
+    }
+}
@@ -0,0 +1,91 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.comp2023.ollir.JmmOptimizer;
+import pt.up.fe.comp2023.ollir.optimization.DeadCodeElimination;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminationTest {
+
+    private static String method(String body) {
+        return "import io; class Foo { int f; public int foo(int n) { int a; int b; int c; int[] arr; " + body + " } " +
+                "public static void main(String[] args) { Foo foo; foo = new Foo(); io.println(foo.foo(3)); } }";
+    }
+
+    @Test
+    public void deadStoresAreRemoved() {
+        CompilerMetrics metrics = CompilerMetrics.start();
+        String jasmin = BackendTestUtils.jasmin(method("a = n * 7; b = a + 1; c = n + 2; return c;"));
+        CompilerMetrics.stop();
+
+        assertFalse(jasmin, jasmin.contains("imul"));
+        assertTrue(metrics.getPhase("deadCodeElimination").getCounter("deadStores") >= 2);
+        // Only this, n and c are left
+        assertTrue(jasmin, jasmin.contains(".limit locals 3"));
+    }
+
+    @Test
+    public void sideEffectsAreKept() {
+        String code = method("a = this.bar(n); arr = new int[n]; b = arr[n]; c = n / 0; f = n; return n;")
+                .replace("public static void main", "public int bar(int x) { io.println(x); return x; } " +
+                "public static void main");
+        String jasmin = BackendTestUtils.jasmin(code);
+
+        assertTrue(jasmin, jasmin.contains("invokevirtual Foo/bar(I)I"));
+        assertTrue(jasmin, jasmin.contains("iaload"));
+        assertTrue(jasmin, jasmin.contains("idiv"));
+        assertTrue(jasmin, jasmin.contains("putfield"));
+    }
+
+    @Test
+    public void literalConditionsArePrunedInTheAst() {
+        String code = method("a = 0; if (true && !false) { a = 1; } else { io.println(2); } " +
+                "while (false) { io.println(3); } return a;");
+        JmmSemanticsResult semantics = TestUtils.analyse(code, BackendTestUtils.optimizeConfig());
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        new JmmOptimizer().optimize(semantics);
+        CompilerMetrics.stop();
+
+        assertFalse(semantics.getRootNode().toTree().contains("ConditionStmt"));
+        assertEquals(1, metrics.getPhase("branchPruning.round1").getCounter("changed"));
+        assertEquals("1", BackendTestUtils.run(BackendTestUtils.optimize(code)).trim().split("\n")[0]);
+    }
+
+    // Each pass walks the AST once, re-walking subtrees per ancestor made this exponential in the depth
+    @Test(timeout = 10000)
+    public void deeplyNestedBranchesArePrunedInLinearTime() {
+        StringBuilder body = new StringBuilder("a = n; ");
+        for (int depth = 0; depth < 40; depth++) {
+            body.append(depth % 2 == 0 ? "if (a < " + depth + ") { " : "if (true) { ");
+        }
+        body.append("a = a + 1; ");
+        for (int depth = 0; depth < 40; depth++) {
+            body.append("} else { a = a - 1; } ");
+        }
+        String code = method(body + "return a;");
+        JmmSemanticsResult semantics = TestUtils.analyse(code, BackendTestUtils.optimizeConfig());
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        new JmmOptimizer().optimize(semantics);
+        CompilerMetrics.stop();
+
+        assertEquals(1, metrics.getPhase("branchPruning.round1").getCounter("changed"));
+        assertEquals(20, semantics.getRootNode().toTree().split("ConditionStmt", -1).length - 1);
+    }
+
+    @Test
+    public void eliminatedProgramsRun() {
+        BackendTestUtils.assertKeepsOutput(BackendTestUtils.perMethod(
+                method -> new DeadCodeElimination(method).optimize()));
+    }
+
+    // Every pass together, as the optimize flag runs them
+    @Test
+    public void optimizedProgramsRun() {
+        BackendTestUtils.assertKeepsOutput(BackendTestUtils::optimize);
+    }
+}
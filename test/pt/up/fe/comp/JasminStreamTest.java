@@ -0,0 +1,30 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class JasminStreamTest {
+
+    @Test
+    public void streamedCodeMatchesJasminResult() throws IOException {
+        for (File file : BackendTestUtils.jasminPrograms()) {
+            OllirResult ollirResult = TestUtils.optimize(SpecsIo.read(file));
+            String expected = new Jasmin().toJasmin(ollirResult).getJasminCode();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Jasmin().writeJasmin(ollirResult, out);
+
+            assertEquals("Jasmin of " + file, expected, out.toString(StandardCharsets.UTF_8));
+            assertFalse(expected.contains("STACK-LIMIT"));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.comp2023.ollir.optimization.ControlFlow;
+import pt.up.fe.comp2023.ollir.optimization.LocalValueNumbering;
+
+import static org.junit.Assert.*;
+
+public class LocalValueNumberingTest {
+
+    private static String method(String body) {
+        return "import io; class Foo { public int foo(int[] a, int i, int x, int y) { int s; " + body + " } " +
+                "public int bar() { return 0; } " +
+                "public static void main(String[] args) { Foo foo; int[] a; foo = new Foo(); a = new int[3]; " +
+                "a[1] = 2; io.println(foo.foo(a, 1, 3, 4)); } }";
+    }
+
+    private static int count(String jasmin, String instruction) {
+        return jasmin.split("\n\t" + instruction + "\n", -1).length - 1;
+    }
+
+    private static String run(String code) {
+        return BackendTestUtils.run(TestUtils.optimize(code));
+    }
+
+    private static String runOptimized(String code) {
+        return BackendTestUtils.run(BackendTestUtils.optimize(code));
+    }
+
+    @Test
+    public void redundantComputationsAreReused() {
+        String code = method("s = a[i] + a[i] + x * y + y * x; return s;");
+        CompilerMetrics metrics = CompilerMetrics.start();
+        String jasmin = BackendTestUtils.jasmin(code);
+        CompilerMetrics.stop();
+
+        assertEquals(jasmin, 1, count(jasmin, "iaload"));
+        assertEquals(jasmin, 1, count(jasmin, "imul"));
+        assertEquals(2, metrics.getPhase("valueNumbering").getCounter("replaced"));
+        assertEquals(run(code), runOptimized(code));
+    }
+
+    @Test
+    public void storesAndCallsForgetLoads() {
+        String code = method("s = a[i]; a[i] = s + 1; s = s + a[i]; s = s + this.bar() + a[i]; return s;");
+        String jasmin = BackendTestUtils.jasmin(code);
+        assertEquals(jasmin, 3, count(jasmin, "iaload"));
+    }
+
+    @Test
+    public void reassignedOperandsAreRecomputed() {
+        String code = method("s = x + y; x = s; s = s + (x + y); return s;");
+        String jasmin = BackendTestUtils.jasmin(code);
+
+        assertEquals(jasmin, 3, count(jasmin, "iadd"));
+        assertEquals(run(code), runOptimized(code));
+    }
+
+    @Test
+    public void numberedProgramsRun() {
+        var valueNumbering = BackendTestUtils.perMethod(method -> {
+            ControlFlow.rebuild(method);
+            new LocalValueNumbering(method).optimize();
+        });
+        BackendTestUtils.assertKeepsOutput(valueNumbering);
+        // Deep expressions over a few locals repeat array loads, and array stores between them must be respected
+        for (int seed = 0; seed < 8; seed++) {
+            var program = new ProgramGenerator(seed).methods(4).statements(30).locals(2).expressionDepth(4).generate();
+            BackendTestUtils.assertKeepsOutput(valueNumbering, program);
+        }
+    }
+}
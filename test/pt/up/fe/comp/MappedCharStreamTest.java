@@ -0,0 +1,71 @@
+package pt.up.fe.comp;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.MappedCharStream;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class MappedCharStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String code) throws IOException {
+        File file = folder.newFile();
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    @Test
+    public void behavesLikeAntlrInputStream() throws IOException {
+        String code = "class A {\n    int a;\n}\n";
+        CharStream mapped = MappedCharStream.open(write(code));
+        CharStream expected = new ANTLRInputStream(code);
+
+        assertTrue(mapped instanceof MappedCharStream);
+        assertEquals(expected.size(), mapped.size());
+        while (expected.LA(1) != IntStream.EOF) {
+            assertEquals(expected.LA(1), mapped.LA(1));
+            expected.consume();
+            mapped.consume();
+            assertEquals(expected.LA(-1), mapped.LA(-1));
+        }
+        assertEquals(IntStream.EOF, mapped.LA(1));
+        assertEquals("int a;", mapped.getText(Interval.of(14, 19)));
+
+        mapped.seek(0);
+        assertEquals('c', mapped.LA(1));
+    }
+
+    @Test
+    public void decodesNonAsciiSources() throws IOException {
+        CharStream mapped = MappedCharStream.open(write("// olá\nclass A {}\n"));
+
+        assertFalse(mapped instanceof MappedCharStream);
+        assertEquals("// olá", mapped.getText(Interval.of(0, 5)));
+    }
+
+    @Test
+    public void parsesMappedFile() throws IOException {
+        String code = new ProgramGenerator(5).methods(10).generate().getCode();
+        JmmParserResult fromString = new SimpleParser().parse(code, new HashMap<>());
+        JmmParserResult fromFile = new SimpleParser().parse(write(code), new HashMap<>());
+
+        TestUtils.noErrors(fromFile);
+        assertEquals(fromString.getRootNode().toTree(), fromFile.getRootNode().toTree());
+    }
+}
@@ -0,0 +1,47 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class NamingContextTest {
+
+    @Test
+    public void namesRestartForEveryCompilation() {
+        String code = new ProgramGenerator(2).generate().getCode();
+        assertEquals(TestUtils.optimize(code).getOllirCode(), TestUtils.optimize(code).getOllirCode());
+    }
+
+    @Test
+    public void concurrentCompilationsDontShareNames() throws Exception {
+        List<String> programs = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int seed = 0; seed < 8; seed++) {
+            String code = new ProgramGenerator(seed).methods(6).nesting(3).generate().getCode();
+            programs.add(code);
+            expected.add(TestUtils.optimize(code).getOllirCode());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int run = 0; run < 4; run++) {
+                for (String code : programs) {
+                    results.add(executor.submit(() -> TestUtils.optimize(code).getOllirCode()));
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i % programs.size()), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp;
+
+import org.junit.After;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelJasminTest {
+
+    @After
+    public void stopMetrics() {
+        CompilerMetrics.stop();
+    }
+
+    private static OllirResult optimize(String code, boolean parallel) {
+        Map<String, String> config = new HashMap<>();
+        config.put("parallel", String.valueOf(parallel));
+        return TestUtils.optimize(code, config);
+    }
+
+    private static String jasmin(String code, boolean parallel) {
+        return new Jasmin().toJasmin(optimize(code, parallel)).getJasminCode();
+    }
+
+    @Test
+    public void sameJasminAsSerial() {
+        for (int seed = 0; seed < 4; seed++) {
+            String code = new ProgramGenerator(seed).methods(24).nesting(3).generate().getCode();
+            assertEquals(jasmin(code, false), jasmin(code, true));
+        }
+    }
+
+    @Test
+    public void sameJasminForTestPrograms() {
+        for (File file : BackendTestUtils.jasminPrograms()) {
+            String code = SpecsIo.read(file);
+            assertEquals(file.getName(), jasmin(code, false), jasmin(code, true));
+        }
+    }
+
+    @Test
+    public void metricsCoverEveryMethod() {
+        String code = new ProgramGenerator(3).methods(10).generate().getCode();
+        OllirResult serial = optimize(code, false);
+        OllirResult parallel = optimize(code, true);
+
+        CompilerMetrics serialMetrics = CompilerMetrics.start();
+        new Jasmin().toJasmin(serial);
+        CompilerMetrics parallelMetrics = CompilerMetrics.start();
+        new Jasmin().toJasmin(parallel);
+        CompilerMetrics.stop();
+
+        // The ten generated methods, main and the constructor
+        assertEquals(12, parallelMetrics.getPhase("jasmin").getCounter("methods"));
+        assertEquals(serialMetrics.getPhase("jasmin").getCounter("instructions"),
+                parallelMetrics.getPhase("jasmin").getCounter("instructions"));
+    }
+}
@@ -0,0 +1,47 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelOllirTest {
+
+    private static String ollir(String code, boolean parallel) {
+        Map<String, String> config = new HashMap<>();
+        config.put("parallel", String.valueOf(parallel));
+        return TestUtils.optimize(code, config).getOllirCode();
+    }
+
+    @Test
+    public void sameOllirAsSerial() {
+        for (int seed = 0; seed < 4; seed++) {
+            String code = new ProgramGenerator(seed).methods(24).nesting(3).generate().getCode();
+            assertEquals(ollir(code, false), ollir(code, true));
+        }
+    }
+
+    @Test
+    public void sameOllirForTestPrograms() {
+        List<File> files = SpecsIo.getFilesRecursive(new File("test/pt/up/fe/comp/cpf/3_ollir"), "jmm");
+        assertFalse(files.isEmpty());
+        for (File file : files) {
+            String code = SpecsIo.read(file);
+            assertEquals(file.getName(), ollir(code, false), ollir(code, true));
+        }
+    }
+
+    @Test
+    public void parallelOutputRuns() {
+        Map<String, String> config = new HashMap<>();
+        config.put("parallel", "true");
+        var program = new ProgramGenerator(9).methods(12).generate();
+        assertEquals(program.getExpectedOutput(), TestUtils.backend(program.getCode(), config).run().replace("\r", ""));
+    }
+}
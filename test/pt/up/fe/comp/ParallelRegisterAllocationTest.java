@@ -0,0 +1,82 @@
+package pt.up.fe.comp;
+
+import org.junit.After;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelRegisterAllocationTest {
+
+    @After
+    public void stopMetrics() {
+        CompilerMetrics.stop();
+    }
+
+    private static OllirResult allocate(String code, String registers, boolean parallel, boolean debug) {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", registers);
+        config.put("parallel", String.valueOf(parallel));
+        config.put("debug", String.valueOf(debug));
+        return TestUtils.optimize(code, config);
+    }
+
+    private static List<String> errors(OllirResult result) {
+        return result.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .map(Report::getMessage)
+                .toList();
+    }
+
+    // Arrays are left out of the generated programs, liveness analysis fails on their arraylength calls
+    @Test
+    public void sameRegistersAsSerial() {
+        for (int seed = 0; seed < 4; seed++) {
+            String code = new ProgramGenerator(seed).methods(16).locals(8).arrays(false).generate().getCode();
+            String serial = new Jasmin().toJasmin(allocate(code, "0", false, false)).getJasminCode();
+            String parallel = new Jasmin().toJasmin(allocate(code, "0", true, false)).getJasminCode();
+            assertEquals(serial, parallel);
+        }
+    }
+
+    @Test
+    public void reportsFirstFailingMethod() {
+        String code = new ProgramGenerator(1).methods(8).locals(6).arrays(false).generate().getCode();
+
+        List<String> serial = errors(allocate(code, "1", false, false));
+        assertEquals(List.of("Not enough registers provided in input for method m0"), serial);
+        assertEquals(serial, errors(allocate(code, "1", true, false)));
+    }
+
+    @Test
+    public void debugReportsEveryFailingMethod() {
+        String code = new ProgramGenerator(1).methods(8).locals(6).arrays(false).generate().getCode();
+
+        List<String> errors = errors(allocate(code, "1", true, true));
+        assertEquals(8, errors.size());
+        assertEquals(errors, errors(allocate(code, "1", false, true)));
+    }
+
+    @Test
+    public void metricsCoverEveryMethod() {
+        String code = new ProgramGenerator(2).methods(6).arrays(false).generate().getCode();
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        allocate(code, "0", true, false);
+        CompilerMetrics.stop();
+
+        // The six generated methods, main and the constructor
+        assertEquals(8, metrics.getPhase("liveness").getCalls());
+        assertEquals(8, metrics.getPhase("interferenceGraph").getCalls());
+        assertNotNull(metrics.getPhase("registerAllocation"));
+    }
+}
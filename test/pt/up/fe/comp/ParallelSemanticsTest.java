@@ -0,0 +1,75 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.analysis.SymbolTableCR;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelSemanticsTest {
+
+    private static List<String> reports(String code, boolean parallel) {
+        Map<String, String> config = new HashMap<>();
+        config.put("parallel", String.valueOf(parallel));
+        return TestUtils.analyse(code, config).getReports().stream().map(Report::toString).toList();
+    }
+
+    @Test
+    public void sameReportsAsSerial() {
+        List<File> files = SpecsIo.getFilesRecursive(new File("test/pt/up/fe/comp/cpf/2_semantic_analysis"), "jmm");
+        assertFalse(files.isEmpty());
+        for (File file : files) {
+            String code = SpecsIo.read(file);
+            assertEquals(file.getName(), reports(code, false), reports(code, true));
+        }
+    }
+
+    // Errors spread over several methods still come out in the serial order
+    @Test
+    public void reportsInSourceOrder() {
+        String code = """
+                class Foo {
+                    public int a(int x) { boolean b; b = x; return x + b; }
+                    public int b(int y) { int[] c; c = y; if (y) { y = 1; } else { y = 2; } return c[true]; }
+                    public int c() { return undefined; }
+                }
+                """;
+        List<String> serial = reports(code, false);
+        assertTrue(serial.size() > 3);
+        assertEquals(serial, reports(code, true));
+    }
+
+    @Test
+    public void generatedProgramsHaveNoErrors() {
+        for (int seed = 0; seed < 4; seed++) {
+            String code = new ProgramGenerator(seed).methods(20).nesting(3).generate().getCode();
+            assertEquals(List.of(), reports(code, true));
+        }
+    }
+
+    private static SymbolTableCR analysedTable() {
+        var result = TestUtils.analyse(new ProgramGenerator(0).methods(3).generate().getCode());
+        return (SymbolTableCR) result.getSymbolTable();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenTableRejectsSymbols() {
+        SymbolTableCR symbolTable = analysedTable();
+        assertTrue(symbolTable.isFrozen());
+        symbolTable.addField(new Symbol(new Type("int", false), "extra"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void frozenTableListsAreReadOnly() {
+        analysedTable().getLocalVariables("m0").add(new Symbol(new Type("int", false), "extra"));
+    }
+}
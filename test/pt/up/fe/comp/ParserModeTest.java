@@ -0,0 +1,69 @@
+package pt.up.fe.comp;
+
+import org.junit.After;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParserModeTest {
+
+    @After
+    public void stopMetrics() {
+        CompilerMetrics.stop();
+    }
+
+    private static JmmParserResult parse(String code, String mode) {
+        Map<String, String> config = new HashMap<>();
+        config.put("parser", mode);
+        return new SimpleParser().parse(code, config);
+    }
+
+    @Test
+    public void sameTreeInEveryMode() {
+        List<File> files = SpecsIo.getFilesRecursive(new File("test/pt/up/fe/comp/cpf"), "jmm");
+        assertFalse(files.isEmpty());
+        for (File file : files) {
+            String code = SpecsIo.read(file);
+            JmmParserResult ll = parse(code, "ll");
+            if (ll.getRootNode() == null) continue;
+            assertEquals(file.getName(), ll.getRootNode().toTree(), parse(code, "twoStage").getRootNode().toTree());
+            assertEquals(file.getName(), ll.getRootNode().toTree(), parse(code, "sll").getRootNode().toTree());
+        }
+    }
+
+    @Test
+    public void validProgramsOnlyNeedSll() {
+        String code = new ProgramGenerator(1).methods(8).expressionDepth(6).generate().getCode();
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        TestUtils.noErrors(parse(code, "twoStage"));
+        CompilerMetrics.stop();
+
+        assertEquals(1, metrics.getPhase("parse").getCounter("sllParses"));
+        assertEquals(0, metrics.getPhase("parse").getCounter("llFallbacks"));
+        assertEquals(0, metrics.getPhase("parse").getCounter("llParses"));
+    }
+
+    @Test
+    public void syntaxErrorsFallBackToLl() {
+        CompilerMetrics metrics = CompilerMetrics.start();
+        JmmParserResult result = parse("class Foo { int a; a = ; }", "twoStage");
+        CompilerMetrics.stop();
+
+        assertNull(result.getRootNode());
+        TestUtils.mustFail(result.getReports());
+        assertEquals(0, metrics.getPhase("parse").getCounter("sllParses"));
+        assertEquals(1, metrics.getPhase("parse").getCounter("llFallbacks"));
+        assertEquals(1, metrics.getPhase("parse").getCounter("llParses"));
+    }
+}
@@ -0,0 +1,70 @@
+package pt.up.fe.comp;
+
+import org.junit.After;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.JavammParser;
+import pt.up.fe.comp2023.ParserPool;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ParserPoolTest {
+
+    @After
+    public void stopMetrics() {
+        CompilerMetrics.stop();
+    }
+
+    private static JmmParserResult parse(String code) {
+        return new SimpleParser().parse(code, new HashMap<>());
+    }
+
+    @Test
+    public void reusesParserPerThread() throws InterruptedException {
+        JavammParser parser = ParserPool.acquire("class A {}");
+        assertSame(parser, ParserPool.acquire("class B {}"));
+
+        AtomicReference<JavammParser> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(ParserPool.acquire("class C {}")));
+        thread.start();
+        thread.join();
+        assertNotSame(parser, other.get());
+    }
+
+    @Test
+    public void reusedParserGivesSameTree() {
+        String first = new ProgramGenerator(1).generate().getCode();
+        String second = new ProgramGenerator(2).generate().getCode();
+        String expected = parse(first).getRootNode().toTree();
+
+        // A failed parse in between must not leave errors or state behind
+        TestUtils.mustFail(parse("class Foo { int a; a = ; }"));
+        parse(second);
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        JmmParserResult result = parse(first);
+        CompilerMetrics.stop();
+
+        TestUtils.noErrors(result);
+        assertEquals(expected, result.getRootNode().toTree());
+        assertEquals(1, metrics.getPhase("parse").getCounter("parserReuses"));
+    }
+
+    @Test
+    public void clearCachesDropsDfaStates() {
+        parse(new ProgramGenerator(3).generate().getCode());
+        assertTrue(ParserPool.getDfaStates() > 0);
+
+        ParserPool.clearCaches();
+        assertEquals(0, ParserPool.getDfaStates());
+
+        TestUtils.noErrors(parse(new ProgramGenerator(3).generate().getCode()));
+        assertTrue(ParserPool.getDfaStates() > 0);
+    }
+}
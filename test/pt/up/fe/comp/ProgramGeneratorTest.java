@@ -0,0 +1,42 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.generator.GeneratedProgram;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import static org.junit.Assert.*;
+
+public class ProgramGeneratorTest {
+
+    @Test
+    public void sameSeedSameProgram() {
+        GeneratedProgram first = new ProgramGenerator(7).generate();
+        GeneratedProgram second = new ProgramGenerator(7).generate();
+
+        assertEquals(first.getCode(), second.getCode());
+        assertEquals(first.getExpectedOutput(), second.getExpectedOutput());
+        assertNotEquals(first.getCode(), new ProgramGenerator(8).generate().getCode());
+    }
+
+    @Test
+    public void largeProgramsPassAnalysis() {
+        for (int seed = 0; seed < 20; seed++) {
+            GeneratedProgram program = new ProgramGenerator(seed)
+                    .methods(20).statements(30).locals(12).fields(6).expressionDepth(5).nesting(4)
+                    .generate();
+            var result = TestUtils.analyse(program.getCode());
+            TestUtils.noErrors(result.getReports());
+        }
+    }
+
+    @Test
+    public void outputMatchesExpected() {
+        for (int seed = 0; seed < 8; seed++) {
+            GeneratedProgram program = new ProgramGenerator(seed).generate();
+            String output = TestUtils.backend(program.getCode()).run();
+            assertEquals("Seed " + seed + "\n" + program.getCode(), program.getExpectedOutput(),
+                    SpecsStrings.normalizeFileContents(output));
+        }
+    }
+}
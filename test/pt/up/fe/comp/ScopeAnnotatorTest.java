@@ -0,0 +1,51 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.ScopeAnnotator;
+import pt.up.fe.comp2023.analysis.analysers.MethodSemantics;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+
+import static org.junit.Assert.*;
+
+public class ScopeAnnotatorTest {
+
+    // What the checkers used to find by walking up from each node
+    private static String enclosingMethod(JmmNode node) {
+        for (JmmNode current = node; current != null; current = current.getJmmParent()) {
+            if (current.getKind().equals("MethodDeclaration")) return current.get("name");
+        }
+        return "";
+    }
+
+    private static void assertScopes(JmmNode node, ScopeAnnotator scopes, MethodSemantics checker) {
+        assertEquals(enclosingMethod(node), scopes.getMethodName(node));
+        if (!enclosingMethod(node).isEmpty()) {
+            assertEquals(enclosingMethod(node), checker.getMethodName(node));
+            assertEquals("Generated", checker.getClassName(node));
+        }
+        for (JmmNode child : node.getChildren()) {
+            assertScopes(child, scopes, checker);
+        }
+    }
+
+    @Test
+    public void everyNodeHasItsEnclosingMethod() {
+        JmmNode root = TestUtils.parse(new ProgramGenerator(5).methods(6).nesting(4).generate().getCode()).getRootNode();
+        ScopeAnnotator scopes = ScopeAnnotator.annotate(root);
+        MethodSemantics checker = new MethodSemantics();
+        checker.setScopes(scopes);
+
+        assertEquals("Generated", scopes.getClassName());
+        assertEquals("", scopes.getMethodName(root));
+        assertScopes(root, scopes, checker);
+    }
+
+    @Test
+    public void nodesOutsideTheTreeAreNotAnnotated() {
+        JmmNode first = TestUtils.parse("class A { public int m() { return 1; } }").getRootNode();
+        JmmNode second = TestUtils.parse("class A { public int m() { return 1; } }").getRootNode();
+
+        assertNull(ScopeAnnotator.annotate(first).getMethodName(second));
+    }
+}
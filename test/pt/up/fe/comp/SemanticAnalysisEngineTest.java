@@ -0,0 +1,73 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.analysis.JmmSimpleAnalysis;
+import pt.up.fe.comp2023.analysis.SemanticAnalysisEngine;
+import pt.up.fe.comp2023.analysis.SemanticAnalysisVisitor;
+import pt.up.fe.comp2023.analysis.SymbolTableCR;
+import pt.up.fe.comp2023.analysis.SymbolTableVisitor;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SemanticAnalysisEngineTest {
+
+    // One traversal per checker, the way the analysis used to run
+    private static List<String> multiPass(JmmParserResult parserResult) {
+        SymbolTableCR symbolTable = new SymbolTableCR();
+        new SymbolTableVisitor().visit(parserResult.getRootNode(), symbolTable);
+        List<Report> reports = new ArrayList<>(symbolTable.getReports());
+        for (SemanticAnalysisVisitor checker : JmmSimpleAnalysis.checkers()) {
+            checker.visit(parserResult.getRootNode(), symbolTable);
+            reports.addAll(checker.getReports());
+        }
+        return reports.stream().map(Report::toString).toList();
+    }
+
+    private static List<String> fused(JmmParserResult parserResult) {
+        return new JmmSimpleAnalysis().semanticAnalysis(parserResult).getReports().stream().map(Report::toString).toList();
+    }
+
+    private static int countNodes(JmmNode node) {
+        int nodes = 1;
+        for (JmmNode child : node.getChildren()) {
+            nodes += countNodes(child);
+        }
+        return nodes;
+    }
+
+    @Test
+    public void sameReportsAsMultiPass() {
+        List<File> files = SpecsIo.getFilesRecursive(new File("test/pt/up/fe/comp/cpf/2_semantic_analysis"), "jmm");
+        assertFalse(files.isEmpty());
+        int withErrors = 0;
+        for (File file : files) {
+            JmmParserResult parserResult = TestUtils.parse(SpecsIo.read(file));
+            List<String> expected = multiPass(parserResult);
+            if (!expected.isEmpty()) withErrors++;
+            assertEquals(file.getName(), expected, fused(parserResult));
+        }
+        assertTrue(withErrors > 0);
+    }
+
+    @Test
+    public void visitsEveryNodeOnce() {
+        JmmParserResult parserResult = TestUtils.parse(new ProgramGenerator(4).methods(10).generate().getCode());
+        SymbolTableCR symbolTable = new SymbolTableCR();
+        new SymbolTableVisitor().visit(parserResult.getRootNode(), symbolTable);
+
+        SemanticAnalysisEngine engine = new SemanticAnalysisEngine(JmmSimpleAnalysis::checkers);
+        assertTrue(engine.analyse(parserResult.getRootNode(), symbolTable, false).isEmpty());
+        assertEquals(countNodes(parserResult.getRootNode()), engine.getNodesVisited());
+        assertTrue(engine.getHandlerCalls() > 0);
+        assertTrue(engine.getHandlerCalls() < engine.getNodesVisited());
+    }
+}
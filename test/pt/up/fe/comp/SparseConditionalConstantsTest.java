@@ -0,0 +1,71 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.Jasmin;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.comp2023.ollir.optimization.ControlFlow;
+import pt.up.fe.comp2023.ollir.optimization.SparseConditionalConstants;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class SparseConditionalConstantsTest {
+
+    private static String method(String body) {
+        return "import io; class Foo { public int foo(boolean c) { int a; int b; boolean debug; " + body + " } " +
+                "public static void main(String[] args) { Foo foo; foo = new Foo(); io.println(foo.foo(true)); } }";
+    }
+
+    @Test
+    public void loopInvariantsReachTheExit() {
+        String code = SpecsIo.read("test/pt/up/fe/comp/cpf/5_optimizations/const_prop/PropWithLoop.jmm");
+        CompilerMetrics metrics = CompilerMetrics.start();
+        OllirResult result = BackendTestUtils.optimize(code);
+        CompilerMetrics.stop();
+
+        assertTrue(metrics.getPhase("constantPropagation").getCounter("rewrites") > 0);
+        String jasmin = new Jasmin().toJasmin(result).getJasminCode();
+        assertTrue(jasmin, jasmin.matches("(?s).*bipush 10\\s+imul.*"));
+        // The loop itself must stay
+        assertTrue(jasmin, jasmin.contains("BODY0:"));
+    }
+
+    @Test
+    public void sameConstantOnBothBranches() {
+        String jasmin = BackendTestUtils.jasmin(method("a = 2; if (c) { b = a * 3; } else { b = 6; } return b;"));
+        assertTrue(jasmin, jasmin.matches("(?s).*bipush 6\\s+ireturn.*"));
+    }
+
+    @Test
+    public void constantConditionsArePruned() {
+        String code = method("debug = false; a = 1; if (debug) { io.println(a); b = 2; } else { b = 3; } " +
+                "while (a < 0) { io.println(b); a = a + 1; } return b;");
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        String jasmin = BackendTestUtils.jasmin(code);
+        CompilerMetrics.stop();
+
+        assertTrue(jasmin, jasmin.matches("(?s).*iconst_3\\s+ireturn.*"));
+        assertFalse(jasmin, jasmin.contains("println(I)V\n\ticonst_2"));
+        // Only the call in main is left
+        assertEquals(jasmin, 1, jasmin.split("println").length - 1);
+        assertEquals(2, metrics.getPhase("constantPropagation").getCounter("foldedBranches"));
+        assertTrue(metrics.getPhase("constantPropagation").getCounter("removedInstructions") > 0);
+        assertEquals("3", BackendTestUtils.run(BackendTestUtils.optimize(code)).trim());
+    }
+
+    @Test
+    public void valuesAreOverdefinedWhenBranchesDisagree() {
+        String jasmin = BackendTestUtils.jasmin(method("if (c) { b = 1; } else { b = 2; } return b;"));
+        assertFalse(jasmin, jasmin.matches("(?s).*iconst_\\d\\s+ireturn.*"));
+    }
+
+    @Test
+    public void propagatedProgramsRun() {
+        BackendTestUtils.assertKeepsOutput(BackendTestUtils.perMethod(method -> {
+            ControlFlow.rebuild(method);
+            new SparseConditionalConstants(method).optimize();
+        }));
+    }
+}
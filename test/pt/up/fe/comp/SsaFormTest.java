@@ -0,0 +1,102 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.metrics.CompilerMetrics;
+import pt.up.fe.comp2023.ollir.optimization.DominatorTree;
+import pt.up.fe.comp2023.ollir.optimization.SsaForm;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SsaFormTest {
+
+    private static final String TWO_LOOPS = "class Foo { public int foo(int n) { int i; int s; i = 0; s = 0; " +
+            "while (i < n) { s = s + i; i = i + 1; } " +
+            "i = 0; while (i < n) { s = s - 1; i = i + 1; } return s; } " +
+            "public static void main(String[] args) { } }";
+
+    private static Method foo(OllirResult result) {
+        result.getOllirClass().buildCFGs();
+        return result.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals("foo"))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    public void loopHeadersDominateTheirBodies() {
+        Method foo = foo(TestUtils.optimize(TWO_LOOPS));
+        DominatorTree dominators = new DominatorTree(foo);
+        dominators.build();
+
+        Instruction entry = dominators.getEntry();
+        Instruction ret = foo.getInstructions().get(foo.getInstructions().size() - 1);
+        for (Instruction inst : foo.getInstructions()) {
+            assertTrue(dominators.dominates(entry, inst));
+        }
+        assertNull(dominators.getIdom(entry));
+        // The return can be reached skipping the second loop, so nothing inside it dominates the return
+        Instruction secondLoopBody = foo.getInstructions().get(foo.getInstructions().size() - 3);
+        assertFalse(dominators.dominates(secondLoopBody, ret));
+        assertFalse(dominators.getFrontier(secondLoopBody).isEmpty());
+    }
+
+    @Test
+    public void everyVersionIsAssignedOnce() {
+        Method foo = foo(TestUtils.optimize(TWO_LOOPS));
+        SsaForm ssa = new SsaForm(foo);
+        ssa.build();
+
+        Set<String> assigned = new HashSet<>();
+        for (Instruction inst : foo.getInstructions()) {
+            for (SsaForm.Phi phi : ssa.getPhis(inst)) {
+                assertTrue(phi.getDest(), assigned.add(phi.getDest()));
+                assertEquals(phi.getVar(), ssa.getOriginal(phi.getDest()));
+            }
+            if (inst instanceof AssignInstruction assign) {
+                String dest = ((Operand) assign.getDest()).getName();
+                assertTrue(dest, assigned.add(dest));
+            }
+        }
+        assertTrue(ssa.getPhiCount() > 0);
+        assertEquals(assigned.size(), ssa.getVersionCount());
+    }
+
+    @Test
+    public void reusedVariablesAreSplit() {
+        Method foo = foo(TestUtils.optimize(TWO_LOOPS));
+        SsaForm ssa = new SsaForm(foo);
+        ssa.build();
+        ssa.destruct();
+
+        // Each loop counter is a web of its own, the sum is carried across both loops
+        assertTrue(foo.getVarTable().containsKey("i"));
+        assertEquals(2, foo.getVarTable().keySet().stream().filter(var -> var.startsWith("i")).count());
+        assertEquals(1, foo.getVarTable().keySet().stream().filter(var -> var.startsWith("s")).count());
+        assertEquals(0, ssa.getPhiCount());
+    }
+
+    @Test
+    public void roundTripKeepsOutput() {
+        BackendTestUtils.assertKeepsOutput(BackendTestUtils.perMethod(method -> {
+            SsaForm ssa = new SsaForm(method);
+            ssa.build();
+            ssa.destruct();
+        }));
+    }
+
+    @Test
+    public void registerAllocationSplitsWebs() {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", "0");
+
+        CompilerMetrics metrics = CompilerMetrics.start();
+        TestUtils.optimize(TWO_LOOPS, config);
+        CompilerMetrics.stop();
+
+        assertTrue(metrics.getPhase("ssa").getCounter("phis") > 0);
+        assertTrue(metrics.getPhase("ssa").getCounter("webs") > 0);
+    }
+}
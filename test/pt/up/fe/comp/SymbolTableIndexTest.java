@@ -0,0 +1,78 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2023.analysis.SymbolTableCR;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableIndexTest {
+
+    private static SymbolTableCR analyse(String code) {
+        var result = TestUtils.analyse(code);
+        TestUtils.noErrors(result.getReports());
+        return (SymbolTableCR) result.getSymbolTable();
+    }
+
+    @Test
+    public void localsShadowParamsAndFields() {
+        SymbolTableCR symbolTable = analyse("""
+                class Foo {
+                    int a;
+                    boolean b;
+                    public int m(boolean a, int c) { int[] b; return c; }
+                    public int n(int d) { return d; }
+                }
+                """);
+
+        assertEquals(new Type("int", true), symbolTable.lookup("b", "m").getType());
+        assertEquals(new Type("boolean", false), symbolTable.lookup("a", "m").getType());
+        assertEquals(new Type("int", false), symbolTable.lookup("a", "n").getType());
+        assertEquals(new Type("boolean", false), symbolTable.lookup("b", "n").getType());
+        assertNull(symbolTable.lookup("c", "n"));
+        assertEquals(new Type("int", true), symbolTable.getAnyType("b", "m"));
+        assertNull(symbolTable.getAnyType("x", "m"));
+
+        assertTrue(symbolTable.localVarExists("b", "m"));
+        assertFalse(symbolTable.localVarExists("b", "n"));
+        assertTrue(symbolTable.paramExists("c", "m"));
+        assertTrue(symbolTable.fieldExists("a"));
+        assertTrue(symbolTable.methodExists("n"));
+        assertFalse(symbolTable.methodExists("o"));
+    }
+
+    @Test
+    public void parameterIndices() {
+        SymbolTableCR symbolTable = analyse("""
+                class Foo {
+                    public int m(int x, boolean y, int[] z) { return x; }
+                    public static void main(String[] args) { }
+                }
+                """);
+
+        assertEquals(1, symbolTable.getParamIndex("x", "m"));
+        assertEquals(3, symbolTable.getParamIndex("z", "m"));
+        assertEquals(1, symbolTable.getParamIndex("args", "main"));
+        assertEquals(-1, symbolTable.getParamIndex("w", "m"));
+        assertEquals(-1, symbolTable.getParamIndex("x", "missing"));
+    }
+
+    @Test
+    public void duplicatesKeepTheFirstSymbol() {
+        SymbolTableCR symbolTable = new SymbolTableCR();
+        symbolTable.addField(new Symbol(new Type("int", false), "f"));
+        symbolTable.addField(new Symbol(new Type("boolean", false), "f"));
+        symbolTable.addMethod("m", new Type("int", false), List.of(
+                new Symbol(new Type("int", false), "p"), new Symbol(new Type("boolean", false), "p")));
+        symbolTable.freeze();
+
+        assertEquals(1, symbolTable.getFields().size());
+        assertEquals(new Type("int", false), symbolTable.getField("f").getType());
+        assertEquals(new Type("int", false), symbolTable.getParameter("p", "m").getType());
+        assertEquals(1, symbolTable.getParamIndex("p", "m"));
+        assertEquals(1, symbolTable.getReports().size());
+    }
+}
@@ -0,0 +1,91 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.SymbolTableCR;
+import pt.up.fe.comp2023.analysis.TypeAnnotator;
+import pt.up.fe.comp2023.generator.ProgramGenerator;
+
+import static org.junit.Assert.*;
+
+public class TypeAnnotatorTest {
+
+    private static String enclosingMethod(JmmNode node) {
+        for (JmmNode current = node; current != null; current = current.getJmmParent()) {
+            if (current.getKind().equals("MethodDeclaration")) return current.get("name");
+        }
+        return "";
+    }
+
+    private static JmmNode find(JmmNode node, String kind) {
+        if (node.getKind().equals(kind)) return node;
+        for (JmmNode child : node.getChildren()) {
+            JmmNode found = find(child, kind);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static int assertTypes(JmmNode node, SymbolTableCR symbolTable) {
+        int typed = 0;
+        Type type = TypeAnnotator.getType(node);
+        if (type != null) {
+            typed++;
+            assertEquals(node.toString(), TypeAnnotator.resolve(node, symbolTable, () -> enclosingMethod(node)), type);
+        }
+        for (JmmNode child : node.getChildren()) {
+            typed += assertTypes(child, symbolTable);
+        }
+        return typed;
+    }
+
+    @Test
+    public void everyExpressionIsTyped() {
+        var result = TestUtils.analyse(new ProgramGenerator(6).methods(8).nesting(3).generate().getCode());
+        TestUtils.noErrors(result.getReports());
+
+        int typed = assertTypes(result.getRootNode(), (SymbolTableCR) result.getSymbolTable());
+        assertTrue(typed > 100);
+    }
+
+    @Test
+    public void ollirSuffixes() {
+        var result = TestUtils.analyse("""
+                class Foo {
+                    int[] a;
+                    public int m(boolean b) { Foo f; f = new Foo(); a = new int[2]; return f.m((b)); }
+                }
+                """);
+        TestUtils.noErrors(result.getReports());
+
+        JmmNode assignF = find(result.getRootNode(), "VarAssign");
+        assertEquals("Foo", assignF.get(TypeAnnotator.TYPE));
+        assertEquals(".Foo", assignF.get(TypeAnnotator.OLLIR_TYPE));
+
+        JmmNode call = find(result.getRootNode(), "MethodCall");
+        assertEquals("int", call.get(TypeAnnotator.TYPE));
+        assertEquals(".Foo", call.getJmmChild(0).get(TypeAnnotator.OLLIR_TYPE));
+        assertEquals("boolean", call.getJmmChild(1).get(TypeAnnotator.TYPE));
+        assertEquals(".bool", call.getJmmChild(1).get(TypeAnnotator.OLLIR_TYPE));
+
+        JmmNode newArray = find(result.getRootNode(), "NewIntArray");
+        assertEquals(new Type("int", true), TypeAnnotator.getType(newArray));
+        assertEquals(".array.i32", newArray.get(TypeAnnotator.OLLIR_TYPE));
+    }
+
+    // Arguments used to be typed by looking at fields first, so a local hiding a field got the field's type
+    @Test
+    public void argumentsUseTheInnermostDeclaration() {
+        String ollir = TestUtils.optimize("""
+                class Foo {
+                    int x;
+                    public int m(boolean y) { return 1; }
+                    public int n() { boolean x; int r; x = true; r = this.m(x); return r; }
+                }
+                """).getOllirCode();
+
+        assertTrue(ollir, ollir.contains("x.bool)"));
+        assertFalse(ollir, ollir.contains("x.i32)"));
+    }
+}